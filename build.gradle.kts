@@ -6,14 +6,21 @@ plugins {
     id("org.springframework.boot") version "3.1.0"
     id("io.spring.dependency-management") version "1.1.0"
     id("com.vaadin") version "24.1.1"
-    kotlin("jvm") version "1.8.21"
-    kotlin("plugin.spring") version "1.8.21"
+    kotlin("jvm") version "1.9.20"
+    kotlin("plugin.spring") version "1.9.20"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "com.ailegorreta"
 version = "2.0.0"
 description = "UI to administrate all IAM security"
-java.sourceCompatibility = JavaVersion.VERSION_17
+
+/* Java 21 is needed for the virtual threads (see spring.threads.virtual.enabled) */
+java {
+    toolchain {
+        languageVersion.set(JavaLanguageVersion.of(21))
+    }
+}
 
 repositories {
     mavenLocal()
@@ -51,6 +58,7 @@ extra["testcontainersVersion"] = "1.17.3"
 extra["otelVersion"] = "1.26.0"
 extra["vok-framework-vokdbVersion"] = "0.15.0"
 extra["ailegorreta-kit-version"] = "2.0.0"
+extra["resilience4jVersion"] = "2.0.2"
 
 dependencies {
     implementation("org.jetbrains.kotlin:kotlin-reflect")
@@ -59,6 +67,7 @@ dependencies {
     implementation("org.jetbrains.kotlinx:kotlinx-coroutines-core:1.3.5")
 
     implementation("org.springframework.boot:spring-boot-starter-actuator")
+    runtimeOnly("io.micrometer:micrometer-registry-prometheus")
     implementation("org.springframework.cloud:spring-cloud-starter-config")
     implementation("org.springframework.boot:spring-boot-starter-oauth2-client")
     implementation("org.springframework.cloud:spring-cloud-starter-netflix-eureka-client") {
@@ -78,6 +87,9 @@ dependencies {
     // ^ Spring RSocket for GraphQL Subscription
 
     implementation("org.springframework.cloud:spring-cloud-starter-circuitbreaker-reactor-resilience4j")
+    implementation("io.github.resilience4j:resilience4j-bulkhead:${property("resilience4jVersion")}")
+    implementation("io.github.resilience4j:resilience4j-micrometer:${property("resilience4jVersion")}")
+    implementation("com.github.ben-manes.caffeine:caffeine")
 
     implementation("com.vaadin:vaadin-core:${property("vaadinVersion")}") {
         /* see: https://stackoverflow.com/questions/74567558/does-production-mode-in-vaadin-24-require-pro-license */
@@ -127,7 +139,7 @@ dependencyManagement {
 }
 
 tasks.named<BootBuildImage>("bootBuildImage") {
-    environment.set(environment.get() + mapOf("BP_JVM_VERSION" to "17.*"))
+    environment.set(environment.get() + mapOf("BP_JVM_VERSION" to "21.*"))
     imageName.set("ailegorreta/${project.name}")
     docker {
         publishRegistry {
@@ -141,7 +153,7 @@ tasks.named<BootBuildImage>("bootBuildImage") {
 tasks.withType<KotlinCompile> {
     kotlinOptions {
         freeCompilerArgs += "-Xjsr305=strict"
-        jvmTarget = "17"
+        jvmTarget = "21"
     }
 }
 
@@ -153,6 +165,16 @@ tasks.withType<Test> {
     useJUnitPlatform()
 }
 
+/* Micro-benchmarks of the hot paths (src/jmh). Run: ./gradlew jmh
+   The results are stored by version in benchmarks/jmh (committed), so they can be compared between releases */
+jmh {
+    warmupIterations.set(2)
+    iterations.set(5)
+    fork.set(1)
+    resultFormat.set("JSON")
+    resultsFile.set(layout.projectDirectory.file("benchmarks/jmh/${project.name}-${project.version}.json"))
+}
+
 configure<SourceSetContainer> {
     named("main") {
         java.srcDir("src/main/java")
@@ -0,0 +1,87 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  BenchmarkData.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.iamui.benchmark
+
+import com.ailegorreta.iamui.backend.data.dto.Link
+import com.ailegorreta.iamui.backend.data.dto.Node
+import com.ailegorreta.iamui.backend.data.dto.facultad.FacultadDTO
+import com.ailegorreta.iamui.backend.data.dto.facultad.PerfilDTO
+import com.ailegorreta.iamui.backend.data.dto.facultad.RolDTO
+import com.ailegorreta.iamui.backend.data.dto.facultad.UsuarioDTO
+import com.ailegorreta.iamui.ui.views.operation.Operation
+import java.time.LocalDate
+
+/**
+ * DTOs used by the benchmarks.
+ *
+ * @author rlh
+ * @project : iam-ui
+ * @date September 2023
+ */
+object BenchmarkData {
+
+    fun facultad(id: Long) = FacultadDTO(id = id, nombre = "FAC$id", descripcion = "Facultad $id",
+                                         usuarioModificacion = "benchmark")
+
+    fun rol(id: Long, facultades: Int) = RolDTO(id = id, idRol = id, nombre = "Rol $id",
+                                                usuarioModificacion = "benchmark",
+                                                facultades = ArrayList((1..facultades).map { facultad(id * 1000 + it) }))
+
+    fun perfil(id: Long, roles: Int, facultades: Int) = PerfilDTO(id = id, nombre = "Perfil $id",
+                                                                  descripcion = "Perfil $id",
+                                                                  usuarioModificacion = "benchmark",
+                                                                  roles = ArrayList((1..roles).map { rol(id * 1000 + it, facultades) }))
+
+    fun usuario(id: Long, perfil: PerfilDTO) = UsuarioDTO(id = id, idUsuario = id, nombre = "Nombre $id",
+                                                          nombreUsuario = "usuario$id", apellido = "Apellido $id",
+                                                          telefono = "00-0000-0000", mail = "usuario$id@lmass.com.mx",
+                                                          activo = true, administrador = false, interno = true,
+                                                          fechaIngreso = LocalDate.now(), usuarioModificacion = "benchmark",
+                                                          zonaHoraria = "America/Mexico_City", perfil = perfil,
+                                                          extraFacultades = listOf(facultad(id)))
+
+    /**
+     * Administrator graph with 10 companies, 5 groups and the usuarios, every usuario works in a
+     * company and is member of a group.
+     */
+    fun graphAdministrador(usuarios: Int): Operation.GraphAdministrador {
+        val nodes = ArrayList<Node>()
+        val edges = ArrayList<Link>()
+        val companias = 10
+        val grupos = 5
+
+        for (i in 1..companias)
+            nodes.add(Node(id = i, idNeo4j = i.toLong(), caption = "compania$i", type = "compania"))
+        for (i in 1..grupos)
+            nodes.add(Node(id = companias + i, idNeo4j = (companias + i).toLong(), caption = "grupo$i", type = "grupo"))
+        for (i in 1..usuarios) {
+            val id = companias + grupos + i
+
+            nodes.add(Node(id = id, idNeo4j = id.toLong(), caption = "usuario$i", type = "usuario"))
+            edges.add(Link(source = id, target = 1 + i % companias, caption = "trabaja"))
+            edges.add(Link(source = companias + 1 + i % grupos, target = id, caption = "miembro"))
+        }
+
+        return Operation.GraphAdministrador(nodes, edges)
+    }
+}
@@ -0,0 +1,119 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  GraphBenchmark.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.iamui.benchmark
+
+import com.ailegorreta.iamui.backend.data.dto.facultad.*
+import com.ailegorreta.iamui.ui.views.operation.Operation
+import com.fasterxml.jackson.databind.ObjectMapper
+import org.openjdk.jmh.annotations.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * Benchmarks of the graphs and trees that are generated in the UI from the DTOs.
+ *
+ * @author rlh
+ * @project : iam-ui
+ * @date September 2023
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class GraphBenchmark {
+
+    @Param("10", "100")
+    var roles = 0
+
+    @Param("10", "50")
+    var facultades = 0
+
+    private lateinit var perfil: PerfilDTO
+
+    @Setup
+    fun setup() {
+        perfil = BenchmarkData.perfil(1, roles, facultades)
+    }
+
+    @Benchmark
+    fun graphPerfilRol() = GraphPerfilRol.mapFromEntity(perfil)
+
+    @Benchmark
+    fun graphRolFacultad() = GraphRolFacultad.mapFromEntity(perfil.roles.first())
+
+    @Benchmark
+    fun treePerfil() = TreePerfil.mapFromEntity(perfil)
+}
+
+/**
+ * Filter of the administrator graph (see Operation) by the usuario name. Every invocation
+ * alternates the filter and its complement (every digit d replaced by 9 - d), so neither one
+ * contains the other and the filter is never narrowed from the previous result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class GraphAdministradorBenchmark {
+
+    @Param("1000", "10000", "100000")
+    var usuarios = 0
+
+    @Param("usuario12", "99")
+    var filter = ""
+
+    private val mapper = ObjectMapper()
+    private lateinit var graph: Operation.GraphAdministrador
+    private lateinit var filters: Array<String>
+    private var invocation = 0
+
+    @Setup
+    fun setup() {
+        graph = BenchmarkData.graphAdministrador(usuarios)
+        graph.filteredData(mapper, "warm-up")       // builds the lazy indexes
+        filters = arrayOf(filter, filter.map { if (it.isDigit()) '0' + ('9' - it) else it }.joinToString(""))
+    }
+
+    @Benchmark
+    fun filteredData() = graph.filteredData(mapper, filters[invocation++ and 1])
+}
+
+/**
+ * Look-up of a node of the administrator graph (see Operation) by its id.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+open class GraphNodeBenchmark {
+
+    @Param("1000", "10000", "100000")
+    var usuarios = 0
+
+    private lateinit var graph: Operation.GraphAdministrador
+
+    @Setup
+    fun setup() {
+        graph = BenchmarkData.graphAdministrador(usuarios)
+        graph.getNode(1)       // builds the lazy index
+    }
+
+    @Benchmark
+    fun getNode() = graph.getNode(usuarios / 2)
+}
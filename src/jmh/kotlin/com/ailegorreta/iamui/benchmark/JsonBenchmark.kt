@@ -0,0 +1,71 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  JsonBenchmark.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.iamui.benchmark
+
+import com.ailegorreta.iamui.backend.data.dto.facultad.PerfilDTO
+import com.ailegorreta.iamui.backend.data.dto.facultad.RolDTO
+import com.ailegorreta.iamui.backend.data.dto.facultad.UsuarioDTO
+import com.fasterxml.jackson.databind.SerializationFeature
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule
+import com.fasterxml.jackson.module.kotlin.jacksonObjectMapper
+import org.openjdk.jmh.annotations.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * Jackson round-trip (write and read) of the arrays that the iam-service returns for a page
+ * of the grids.
+ *
+ * @author rlh
+ * @project : iam-ui
+ * @date September 2023
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class JsonBenchmark {
+
+    @Param("50", "500")
+    var size = 0
+
+    private val mapper = jacksonObjectMapper().registerModule(JavaTimeModule())
+                                              .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+    private lateinit var roles: Array<RolDTO>
+    private lateinit var perfiles: Array<PerfilDTO>
+    private lateinit var usuarios: Array<UsuarioDTO>
+
+    @Setup
+    fun setup() {
+        perfiles = Array(size) { BenchmarkData.perfil(it.toLong(), 5, 10) }
+        roles = Array(size) { BenchmarkData.rol(it.toLong(), 10) }
+        usuarios = Array(size) { BenchmarkData.usuario(it.toLong(), perfiles[it]) }
+    }
+
+    @Benchmark
+    fun roles(): Array<RolDTO> = mapper.readValue(mapper.writeValueAsBytes(roles), Array<RolDTO>::class.java)
+
+    @Benchmark
+    fun perfiles(): Array<PerfilDTO> = mapper.readValue(mapper.writeValueAsBytes(perfiles), Array<PerfilDTO>::class.java)
+
+    @Benchmark
+    fun usuarios(): Array<UsuarioDTO> = mapper.readValue(mapper.writeValueAsBytes(usuarios), Array<UsuarioDTO>::class.java)
+}
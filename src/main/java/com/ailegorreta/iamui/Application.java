@@ -27,6 +27,7 @@ import com.ailegorreta.iamui.backend.service.MessageService;
 import com.ailegorreta.iamui.config.ServiceConfig;
 import com.vaadin.flow.component.dependency.NpmPackage;
 import com.vaadin.flow.component.page.AppShellConfigurator;
+import com.vaadin.flow.component.page.Push;
 import com.vaadin.flow.server.PWA;
 import com.vaadin.flow.theme.Theme;
 import org.springframework.boot.ApplicationRunner;
@@ -59,6 +60,7 @@ import org.springframework.web.client.RestTemplate;
 @Theme(value = "iam-ui")
 @PWA(name = "IAM UI", shortName = "IAM", offlinePath="offline-page.html", offlineResources = { "./images/offline-login-banner.jpg"})
 @NpmPackage(value = "line-awesome", version = "1.3.0")
+@Push
 @ComponentScan(basePackages = {"com.ailegorreta.iamui", "com.ailegorreta.client.security"})
 public class Application extends SpringBootServletInitializer implements AppShellConfigurator {
 
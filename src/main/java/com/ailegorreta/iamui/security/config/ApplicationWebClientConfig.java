@@ -26,6 +26,9 @@ import com.ailegorreta.client.rest.RestCallerConfiguration;
 import com.ailegorreta.client.rest.WebClientFilter;
 import com.ailegorreta.client.rest.config.WebClientConfig;
 import com.ailegorreta.client.security.config.SecurityServiceConfig;
+import com.ailegorreta.iamui.config.RemoteCallResilience;
+import com.ailegorreta.iamui.config.WebClientConnectors;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
 import org.springframework.cloud.loadbalancer.annotation.LoadBalancerClient;
@@ -109,19 +112,70 @@ public class ApplicationWebClientConfig extends WebClientConfig {
     @Bean("authorization_code")
     WebClient webClientAC(@Qualifier("webClientBuilder")WebClient.Builder builder,
                           SecurityServiceConfig serviceConfig,
-                          OAuth2AuthorizedClientManager authorizedClientManager) {
-        return super.webClientAuthenticationCode(builder, serviceConfig, authorizedClientManager);
+                          OAuth2AuthorizedClientManager authorizedClientManager,
+                          MeterRegistry meterRegistry,
+                          WebClientConnectors connectors,
+                          RemoteCallResilience resilience) {
+        return super.webClientAuthenticationCode(configured(builder, meterRegistry, connectors, resilience, "iam", "authorization_code"),
+                                                 serviceConfig, authorizedClientManager);
+    }
+
+    /**
+     * Same as authorization_code WebClient but with the connection pool of the cache-service.
+     */
+    @Bean("authorization_code_cache")
+    WebClient webClientACCache(@Qualifier("webClientBuilder")WebClient.Builder builder,
+                               SecurityServiceConfig serviceConfig,
+                               OAuth2AuthorizedClientManager authorizedClientManager,
+                               MeterRegistry meterRegistry,
+                               WebClientConnectors connectors,
+                               RemoteCallResilience resilience) {
+        return super.webClientAuthenticationCode(configured(builder, meterRegistry, connectors, resilience, "cache", "authorization_code_cache"),
+                                                 serviceConfig, authorizedClientManager);
+    }
+
+    /**
+     * Same as authorization_code WebClient but with the connection pool of the audit-service.
+     */
+    @Bean("authorization_code_audit")
+    WebClient webClientACAudit(@Qualifier("webClientBuilder")WebClient.Builder builder,
+                               SecurityServiceConfig serviceConfig,
+                               OAuth2AuthorizedClientManager authorizedClientManager,
+                               MeterRegistry meterRegistry,
+                               WebClientConnectors connectors,
+                               RemoteCallResilience resilience) {
+        return super.webClientAuthenticationCode(configured(builder, meterRegistry, connectors, resilience, "audit", "authorization_code_audit"),
+                                                 serviceConfig, authorizedClientManager);
     }
 
     @Bean("authorization_code_load_balanced")
     WebClient webClientACLoadBalanced(@Qualifier("webClientBuilderLoadBalanced") WebClient.Builder builderLoaBalanced,
                                       @Qualifier("webClientBuilder") WebClient.Builder builder,
                                       SecurityServiceConfig serviceConfig,
-                                      OAuth2AuthorizedClientManager authorizedClientManager) {
+                                      OAuth2AuthorizedClientManager authorizedClientManager,
+                                      MeterRegistry meterRegistry,
+                                      WebClientConnectors connectors,
+                                      RemoteCallResilience resilience) {
         if (serviceConfig.useLoadBalanced())
-            return super.webClientAuthenticationCode(builderLoaBalanced, serviceConfig, authorizedClientManager);
+            return super.webClientAuthenticationCode(configured(builderLoaBalanced, meterRegistry, connectors, resilience, "iam", "authorization_code_load_balanced"),
+                                                     serviceConfig, authorizedClientManager);
         else
-            return super.webClientAuthenticationCode(builder, serviceConfig, authorizedClientManager);
+            return super.webClientAuthenticationCode(configured(builder, meterRegistry, connectors, resilience, "iam", "authorization_code_load_balanced"),
+                                                     serviceConfig, authorizedClientManager);
+    }
+
+    /**
+     * The builders are shared by all WebClients, so the connection pool of the backend, the metrics
+     * filter and the circuit breakers and bulkheads are set in a clone of them (the clone keeps the
+     * load balancer filter). The metrics filter is first, so it also times the rejected calls.
+     */
+    private WebClient.Builder configured(WebClient.Builder builder, MeterRegistry meterRegistry,
+                                         WebClientConnectors connectors, RemoteCallResilience resilience,
+                                         String backend, String client) {
+        return builder.clone()
+                      .clientConnector(connectors.connector(backend))
+                      .filter(new RemoteCallMetricsFilter(meterRegistry, client))
+                      .filter(resilience);
     }
 
     @Bean
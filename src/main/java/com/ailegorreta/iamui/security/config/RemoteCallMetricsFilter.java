@@ -0,0 +1,142 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  RemoteCallMetricsFilter.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.iamui.security.config;
+
+import com.ailegorreta.iamui.config.ViewTrace;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Instruments every remote call done with the WebClients (i.e., the iam-service, the cache and
+ * the audit calls) and records:
+ *
+ * - iam.ui.remote.latency: timer (with histogram) from the request until its body is read.
+ * - iam.ui.remote.bytes: bytes of the response bodies.
+ * - iam.ui.remote.errors: responses with an error status, calls that failed (e.g., timeouts) and
+ *   calls cancelled before their response (outcome CANCELLED).
+ *
+ * All meters are tagged by the logical operation. The services name the operation (i.e.,
+ * service.method, e.g., RolService.findByNameActive) with the operation() request attribute,
+ * otherwise the URI path is used (the ids go as query parameters, so the paths are a bounded set).
+ *
+ * The calls and their bytes are also added to the trace of the view (see ViewTrace).
+ *
+ * @author rlh
+ * @project iam-ui
+ * @date September 2023
+ */
+public class RemoteCallMetricsFilter implements ExchangeFilterFunction {
+
+    public static final String OPERATION_ATTRIBUTE = RemoteCallMetricsFilter.class.getName() + ".operation";
+
+    private final MeterRegistry registry;
+    private final String client;
+
+    public RemoteCallMetricsFilter(MeterRegistry registry, String client) {
+        this.registry = registry;
+        this.client = client;
+    }
+
+    /**
+     * Names the logical operation of a request, e.g.:
+     *    webclient.get().uri(...).attributes(operation("RolService.findByNameActive"))
+     */
+    public static Consumer<Map<String, Object>> operation(String name) {
+        return attributes -> attributes.put(OPERATION_ATTRIBUTE, name);
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        return Mono.defer(() -> {
+            String operation = request.attribute(OPERATION_ATTRIBUTE)
+                                      .map(Object::toString)
+                                      .orElse(request.url().getPath());
+            Timer.Sample sample = Timer.start(registry);
+            List<ViewTrace> traces = ViewTrace.remoteCall();
+
+            return next.exchange(request)
+                       .map(response -> measured(request, response, operation, sample, traces))
+                       .doOnError(throwable -> {
+                           stop(sample, request, operation, "CLIENT_ERROR", "error");
+                           errors(operation, throwable.getClass().getSimpleName()).increment();
+                       })
+                       .doOnCancel(() -> {     // e.g., the timeout of the service or the TimeLimiter
+                           stop(sample, request, operation, "CANCELLED", "CANCELLED");
+                           errors(operation, "CANCELLED").increment();
+                       });
+        });
+    }
+
+    /*
+     * The call ends when its body is read (or released), so the body is wrapped to count its
+     * bytes and to stop the timer.
+     */
+    private ClientResponse measured(ClientRequest request, ClientResponse response, String operation,
+                                    Timer.Sample sample, List<ViewTrace> traces) {
+        String status = String.valueOf(response.statusCode().value());
+        String outcome = response.statusCode().isError() ? "error" : "success";
+        AtomicLong bytes = new AtomicLong();
+
+        if (response.statusCode().isError())
+            errors(operation, status).increment();
+
+        return response.mutate()
+                       .body(body -> body.doOnNext(buffer -> bytes.addAndGet(buffer.readableByteCount()))
+                                         .doFinally(signal -> {
+                                             stop(sample, request, operation, status, outcome);
+                                             DistributionSummary.builder("iam.ui.remote.bytes")
+                                                                .baseUnit("bytes")
+                                                                .tags("client", client, "operation", operation)
+                                                                .register(registry)
+                                                                .record(bytes.get());
+                                             traces.forEach(trace -> trace.getResponseBytes().addAndGet(bytes.get()));
+                                         }))
+                       .build();
+    }
+
+    private void stop(Timer.Sample sample, ClientRequest request, String operation, String status, String outcome) {
+        sample.stop(Timer.builder("iam.ui.remote.latency")
+                         .publishPercentileHistogram()
+                         .tags("client", client, "operation", operation, "method", request.method().name(),
+                               "status", status, "outcome", outcome)
+                         .register(registry));
+    }
+
+    private Counter errors(String operation, String error) {
+        return Counter.builder("iam.ui.remote.errors")
+                      .tags("client", client, "operation", operation, "error", error)
+                      .register(registry);
+    }
+}
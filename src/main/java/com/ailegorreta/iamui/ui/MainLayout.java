@@ -38,7 +38,6 @@ import com.ailegorreta.iamui.ui.components.WebNotification;
 import com.ailegorreta.iamui.config.ServiceConfig;
 import com.ailegorreta.iamui.ui.components.navigation.bar.AppBar;
 import com.ailegorreta.iamui.ui.components.navigation.bar.TabBar;
-import com.ailegorreta.iamui.ui.exceptions.RestClientException;
 import com.ailegorreta.iamui.ui.views.operation.Areas;
 import com.ailegorreta.iamui.ui.views.operation.SolicitudesAsignacion;
 import com.ailegorreta.iamui.ui.views.permits.Perfiles;
@@ -140,9 +139,7 @@ public class MainLayout extends FlexBoxLayout implements RouterLayout, HasLogger
 		this.serverProperties = serverProperties;
 		appName = serviceConfig.getAppName();       	// in properties file
 		appVersion = serviceConfig.getAppVersion();
-		systemDate = cacheService.getDay(0);		// Read system date from cache microservice
-		if (systemDate == null)
-			throw new RestClientException(500, "El servicio de consulta de la fecha del sistema esta fuera de línea");
+		systemDate = cacheService.systemDate();		// System date of the cache microservice (application wide)
 		logoutUtil = new LogoutUtil(serverProperties);
 
 		addClassName(CLASS_NAME);
@@ -0,0 +1,121 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  AsyncLoader.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.iamui.ui.components;
+
+import com.ailegorreta.client.components.utils.UIUtils;
+import com.vaadin.flow.component.Component;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.UIDetachedException;
+import com.vaadin.flow.component.html.Div;
+import com.vaadin.flow.component.html.Span;
+import com.vaadin.flow.component.progressbar.ProgressBar;
+import com.vaadin.flow.function.SerializableConsumer;
+import com.vaadin.flow.shared.Registration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ *  Loads the data of a component in background, so the view is rendered immediately and the
+ *  data is pushed to the browser (UI.access) when it arrives from the back-end microservices.
+ *
+ *  While loading, the placeholder is displayed. A new load cancels the previous one, and
+ *  the load is cancelled when the owner component is detached (e.g., the user navigates
+ *  to other view before the data arrives).
+ *
+ *  note: The Mono must be subscribed in the request thread, since the OAuth2 WebClient reads
+ *        the security context when it is subscribed. Just the result is handled in other thread.
+ *
+ *  @author rlh
+ *  @project : iam-ui
+ *  @date September 2023
+ */
+public class AsyncLoader<T> {
+
+    private static Logger logger = LoggerFactory.getLogger(AsyncLoader.class);
+
+    private final Component     owner;
+    private final Div           placeholder;
+    private Disposable          loading = null;
+    private Registration        detachRegistration = null;
+
+    public AsyncLoader(Component owner, String message) {
+        this.owner = owner;
+        placeholder = new Div(new Span(message), createProgressBar());
+        placeholder.setWidthFull();
+        placeholder.setVisible(false);
+    }
+
+    private ProgressBar createProgressBar() {
+        ProgressBar progressBar = new ProgressBar();
+
+        progressBar.setIndeterminate(true);
+
+        return progressBar;
+    }
+
+    /**
+     * The placeholder must be added by the owner in its layout.
+     */
+    public Component getPlaceholder() { return placeholder; }
+
+    public void load(Mono<T> data, SerializableConsumer<T> onLoaded) {
+        load(data, onLoaded, error -> UIUtils.showNotification("Error NO se pudieron leer los datos del servidor"));
+    }
+
+    public void load(Mono<T> data, SerializableConsumer<T> onLoaded, SerializableConsumer<Throwable> onError) {
+        UI ui = owner.getUI().orElse(UI.getCurrent());
+
+        cancel();
+        placeholder.setVisible(true);
+        if (detachRegistration == null)
+            detachRegistration = owner.addDetachListener(event -> cancel());
+        loading = data.publishOn(Schedulers.boundedElastic())
+                      .subscribe(value -> access(ui, () -> onLoaded.accept(value)),
+                                 error -> {
+                                    logger.error("Error al leer los datos en background", error);
+                                    access(ui, () -> onError.accept(error));
+                                 },
+                                 () -> access(ui, () -> {}));
+    }
+
+    private void access(UI ui, Runnable command) {
+        try {
+            ui.access(() -> {
+                placeholder.setVisible(false);
+                command.run();
+            });
+        } catch (UIDetachedException e) {
+            logger.debug("La vista fue cerrada antes de recibir los datos");
+        }
+    }
+
+    public void cancel() {
+        if (loading != null && !loading.isDisposed())
+            loading.dispose();
+        loading = null;
+        placeholder.setVisible(false);
+    }
+}
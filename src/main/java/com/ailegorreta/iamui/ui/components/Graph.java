@@ -22,6 +22,7 @@
  */
 package com.ailegorreta.iamui.ui.components;
 
+import com.ailegorreta.iamui.config.ViewTrace;
 import java.util.*;
 
 import com.ailegorreta.client.components.utils.UIUtils;
@@ -33,6 +34,7 @@ import org.slf4j.LoggerFactory;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.config.ConfigurableBeanFactory;
 import org.springframework.context.annotation.Scope;
+import reactor.core.publisher.Mono;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -51,6 +53,7 @@ import com.vaadin.flow.component.grid.dnd.GridDropMode;
 
 import com.ailegorreta.iamui.backend.data.dto.DnDDTO;
 import com.ailegorreta.iamui.backend.data.dto.GraphDTO;
+import com.ailegorreta.iamui.backend.data.dto.GraphDelta;
 
 /**
  *  Custom component to display Alchemys graphs y d3.js library
@@ -91,13 +94,15 @@ public class Graph extends Composite<Div> {
     private final ObjectMapper		mapper;
     private GraphDTO 				item;
     private HashMap<Integer,Integer>selectedNodes = new HashMap<Integer, Integer>();
+    private final AsyncLoader<GraphDTO> loader;
     
 	public Graph(ObjectMapper mapper) {
     	this.mapper = mapper;
         page = UI.getCurrent().getPage();
         this.setId(CLASS_NAME);
         dnDropZone = createDnDropZone();
-        getContent().add(dnDropZone);        
+        loader = new AsyncLoader<>(this, "Leyendo la gráfica...");
+        getContent().add(dnDropZone, loader.getPlaceholder());
  	}
 
 
@@ -182,9 +187,14 @@ public class Graph extends Composite<Div> {
 
 	public boolean itemDropped(DnDDTO itemDropped, boolean notDroppedObject, Object item) {
 		if (droppedObject || notDroppedObject) {	
-			selectedNodes.clear();	
-			page.executeJs("other_data="+this.item.addNode(mapper, itemDropped)+ ";updateGraph();");
-			page.executeJs("initOnClick();");
+			selectedNodes.clear();
+			GraphDelta delta = this.item.addNodeDelta(itemDropped);
+
+			if (delta != null)
+				applyDelta(delta);
+			else
+				ViewTrace.executeJs(page, "other_data="+this.item.addNode(mapper, itemDropped)+ ";updateGraph();");
+			ViewTrace.executeJs(page, "initOnClick();");
 
 			droppedObject = false;		
 			fireEvent(new SaveEvent(this, true, item));
@@ -193,11 +203,49 @@ public class Graph extends Composite<Div> {
 		return false;
 	}
 	
+	/*
+	 * Adds many nodes at once (e.g., a multi-item drop). The caller already saved them in one
+	 * batch, so no SaveEvent is fired. The delta methods modify the graph, so the deltas are used
+	 * just when all the nodes support them, otherwise the whole graph is sent.
+	 */
+	public void addNodes(List<? extends DnDDTO> addNodes) {
+		selectedNodes.clear();
+		if (addNodes.stream().allMatch(item::supportsDelta)) {
+			GraphDelta delta = new GraphDelta();
+
+			for (DnDDTO node : addNodes)
+				delta = delta.plus(item.addNodeDelta(node));
+			applyDelta(delta);
+		} else {
+			String data = null;
+
+			for (DnDDTO addNode : addNodes)
+				data = item.addNode(mapper, addNode);
+			ViewTrace.executeJs(page, "other_data="+data+ ";updateGraph();");
+		}
+		ViewTrace.executeJs(page, "initOnClick();");
+	}
+
 	public void deleteNodes(List<DnDDTO> deleteNodes) {
-		selectedNodes.clear();			
-		deleteNodes.forEach(node -> item.deleteNode(node));
-		page.executeJs("other_data="+item.jsonString(mapper)+ ";updateGraph();");
-		page.executeJs("initOnClick();");		
+		selectedNodes.clear();
+		if (deleteNodes.stream().allMatch(item::supportsDelta)) {
+			GraphDelta delta = new GraphDelta();
+
+			for (DnDDTO node : deleteNodes)
+				delta = delta.plus(item.deleteNodeDelta(node));
+			applyDelta(delta);
+		} else {
+			deleteNodes.forEach(deleteNode -> item.deleteNode(deleteNode));
+			ViewTrace.executeJs(page, "other_data="+item.jsonString(mapper)+ ";updateGraph();");
+		}
+		ViewTrace.executeJs(page, "initOnClick();");
+	}
+
+	/*
+	 * Sends just the changes to the graph.js, so the graph is updated in place.
+	 */
+	private void applyDelta(GraphDelta delta) {
+		ViewTrace.executeJs(page, "applyGraphDelta(" + delta.jsonString(mapper) + ");");
 	}
 	
 	private Component createAssign(String title) {		
@@ -231,10 +279,18 @@ public class Graph extends Composite<Div> {
 		this.item = item;
 		setDnDropTitle(item.getDndDropTitle());
 		selectedNodes.clear();	
-		page.executeJs("other_data=" + item.jsonString(mapper) + ";renderGraph();");
-		page.executeJs("initOnClick();");
+		ViewTrace.executeJs(page, "other_data=" + item.jsonString(mapper) + ";renderGraph();");
+		ViewTrace.executeJs(page, "initOnClick();");
 	}
 	
+	/**
+	 * Starts the graph when its data arrives from the back-end, without blocking the view.
+	 */
+	public void startGraph(Mono<? extends GraphDTO> item) {
+		loader.load(item.map(GraphDTO.class::cast), this::startGraph,
+					error -> UIUtils.showNotification("Error NO se pudo leer los datos de la gráfica"));
+	}
+
 	public Registration addSaveListener(ComponentEventListener<SaveEvent> listener) {
 		return addListener(SaveEvent.class, listener);
 	}
@@ -261,11 +317,11 @@ public class Graph extends Composite<Div> {
 	}
     
 	public void updateGraph() {
-		page.executeJs("updateGraph()");
-		page.executeJs("initOnClick();");
+		ViewTrace.executeJs(page, "updateGraph()");
+		ViewTrace.executeJs(page, "initOnClick();");
 	}
 
-	public void setWidth(Integer width) {  page.executeJs("graphWidth=" + width +";"); }
+	public void setWidth(Integer width) {  ViewTrace.executeJs(page, "graphWidth=" + width +";"); }
 
-	public void setHeight(Integer height) { page.executeJs("graphHeight=" + height +";"); }
+	public void setHeight(Integer height) { ViewTrace.executeJs(page, "graphHeight=" + height +";"); }
 }
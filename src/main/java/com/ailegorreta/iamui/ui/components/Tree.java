@@ -22,6 +22,7 @@
  */
 package com.ailegorreta.iamui.ui.components;
 
+import com.ailegorreta.iamui.config.ViewTrace;
 import org.slf4j.LoggerFactory;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.config.ConfigurableBeanFactory;
@@ -33,6 +34,7 @@ import com.vaadin.flow.component.UI;
 import com.vaadin.flow.component.html.Div;
 import com.vaadin.flow.component.page.Page;
 import com.vaadin.flow.spring.annotation.SpringComponent;
+import reactor.core.publisher.Mono;
 
 /**
  *  Custom component to display Alchemys tree graphs
@@ -51,10 +53,13 @@ public class Tree extends Composite<Div> {
     private static Logger logger =  LoggerFactory.getLogger(Tree.class);
 
     private final Page page;
+    private final AsyncLoader<String> loader;
 
     public Tree() {
         page = UI.getCurrent().getPage();
         this.setId(CLASS_NAME);
+        loader = new AsyncLoader<>(this, "Leyendo el árbol...");
+        getContent().add(loader.getPlaceholder());
     }
 
     @Override
@@ -70,13 +75,20 @@ public class Tree extends Composite<Div> {
     }
 
     public void startTree(String data) {
-        page.executeJs("other_data="+ data +";");
-        page.executeJs("renderTree();");
+        ViewTrace.executeJs(page, "other_data="+ data +";");
+        ViewTrace.executeJs(page, "renderTree();");
     }
 
     public void updateTree(String data) {
-        page.executeJs("other_data=" + data);
-        page.executeJs("updateTree()");
+        ViewTrace.executeJs(page, "other_data=" + data);
+        ViewTrace.executeJs(page, "updateTree()");
     }
 
+    /**
+     * Same as startTree and updateTree but the data is generated in background (see AsyncLoader).
+     */
+    public void startTree(Mono<String> data) { loader.load(data, this::startTree); }
+
+    public void updateTree(Mono<String> data) { loader.load(data, this::updateTree); }
+
 }
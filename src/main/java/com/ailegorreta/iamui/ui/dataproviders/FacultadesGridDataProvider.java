@@ -23,6 +23,7 @@
 package com.ailegorreta.iamui.ui.dataproviders;
 
 import java.io.Serializable;
+import java.time.Duration;
 import java.util.*;
 import java.util.function.Consumer;
 
@@ -31,6 +32,7 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.vaadin.artur.spring.dataprovider.FilterablePageableDataProvider;
+import reactor.core.publisher.Mono;
 
 import com.vaadin.flow.data.provider.Query;
 import com.vaadin.flow.data.provider.QuerySortOrder;
@@ -70,18 +72,37 @@ public class FacultadesGridDataProvider extends FilterablePageableDataProvider<F
 			return showActive;
 		}
 		
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (!(o instanceof FacultadFilter)) return false;
+
+			FacultadFilter other = (FacultadFilter) o;
+
+			return showActive == other.showActive && Objects.equals(filter, other.filter);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(filter, showActive);
+		}
+
 		public static FacultadFilter getEmptyFilter() {
 			return new FacultadFilter("", false);
 		}
 	}
 
 	private final FacultadService 		facultadService;
+	private final PageReadAhead<FacultadDTO, FacultadFilter> readAhead;
 	private List<QuerySortOrder> 		defaultSortOrders;
 	private Consumer<Page<FacultadDTO>> pageObserver;
+	private FilterPipeline<FacultadFilter> filterPipeline;
 	
 	@Autowired
 	public FacultadesGridDataProvider(FacultadService facultadService) {
 		this.facultadService = facultadService;
+		this.readAhead = new PageReadAhead<>("facultades", FacultadDTO.class, facultadService.getServiceConfig(), facultadService::copy,
+											 (filter, pageable) -> facultadService.findAnyMatchingActivePage(Optional.ofNullable(filter), pageable));
 		setSortOrders(Sort.Direction.ASC, FACULTAD_SORT_FIELDS);
 	}
 
@@ -100,7 +121,7 @@ public class FacultadesGridDataProvider extends FilterablePageableDataProvider<F
 	@Override
 	protected Page<FacultadDTO> fetchFromBackEnd(Query<FacultadDTO, FacultadFilter> query, Pageable pageable) {
 		FacultadFilter 		filter = query.getFilter().orElse(FacultadFilter.getEmptyFilter());
-		Page<FacultadDTO> 	page = facultadService.findAnyMatchingActive(Optional.ofNullable(filter), pageable);
+		Page<FacultadDTO> 	page = readAhead.page(filter, pageable);
 		
 		if (pageObserver != null) 
 			pageObserver.accept(page);
@@ -122,6 +143,19 @@ public class FacultadesGridDataProvider extends FilterablePageableDataProvider<F
 		return res.intValue();
 	}
 
+	/**
+	 * Filter typed by the user: it is debounced and its count and first page are read before it is set
+	 * (see FilterPipeline).
+	 */
+	public void submitFilter(FacultadFilter filter) {
+		if (filterPipeline == null)
+			filterPipeline = new FilterPipeline<>("facultades",
+												  Duration.ofMillis(facultadService.getServiceConfig().getFilterDebounceMillis()),
+												  f -> Mono.when(facultadService.countAnyMatchingActive(Optional.of(f)), readAhead.prefetchFirstPage(f)),
+												  this::setFilter);
+		filterPipeline.submit(filter);
+	}
+
 	public void setPageObserver(Consumer<Page<FacultadDTO>> pageObserver) {
 		this.pageObserver = pageObserver;
 	}
@@ -23,6 +23,7 @@
 package com.ailegorreta.iamui.ui.dataproviders;
 
 import java.io.Serializable;
+import java.util.Objects;
 
 /**
  * A pageable Roles data provider filter.
@@ -53,6 +54,21 @@ public class RolFilter implements Serializable {
 		return showActive;
 	}
 	
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (!(o instanceof RolFilter)) return false;
+
+		RolFilter other = (RolFilter) o;
+
+		return showActive == other.showActive && Objects.equals(filter, other.filter);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(filter, showActive);
+	}
+
 	public static RolFilter getEmptyFilter() {
 		return new RolFilter("", false);
 	}
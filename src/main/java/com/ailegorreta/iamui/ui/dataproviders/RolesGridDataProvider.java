@@ -22,6 +22,7 @@
  */
 package com.ailegorreta.iamui.ui.dataproviders;
 
+import java.time.Duration;
 import java.util.*;
 import java.util.function.Consumer;
 
@@ -30,6 +31,7 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.vaadin.artur.spring.dataprovider.FilterablePageableDataProvider;
+import reactor.core.publisher.Mono;
 import com.vaadin.flow.data.provider.Query;
 import com.vaadin.flow.data.provider.QuerySortOrder;
 import com.vaadin.flow.data.provider.QuerySortOrderBuilder;
@@ -52,12 +54,16 @@ public class RolesGridDataProvider extends FilterablePageableDataProvider<RolDTO
 	public static final String[] ROL_SORT_FIELDS = {"nombre"};
 
 	private final RolService 			service;
+	private final PageReadAhead<RolDTO, RolFilter> readAhead;
 	private List<QuerySortOrder> 		defaultSortOrders;
 	private Consumer<Page<RolDTO>> 		pageObserver;
+	private FilterPipeline<RolFilter>	filterPipeline;
 	
 	@Autowired
 	public RolesGridDataProvider(RolService service) {
 		this.service = service;
+		this.readAhead = new PageReadAhead<>("roles", RolDTO.class, service.getServiceConfig(), service::copy,
+											 (filter, pageable) -> service.findAnyMatchingActivePage(Optional.ofNullable(filter), pageable));
 		setSortOrders(Sort.Direction.ASC, ROL_SORT_FIELDS);
 	}
 
@@ -76,7 +82,7 @@ public class RolesGridDataProvider extends FilterablePageableDataProvider<RolDTO
 	@Override
 	protected Page<RolDTO> fetchFromBackEnd(Query<RolDTO, RolFilter> query, Pageable pageable) {
 		RolFilter 		filter = query.getFilter().orElse(RolFilter.getEmptyFilter());
-		Page<RolDTO> 	page = service.findAnyMatchingActive(Optional.ofNullable(filter), pageable);
+		Page<RolDTO> 	page = readAhead.page(filter, pageable);
 		
 		if (pageObserver != null) 
 			pageObserver.accept(page);
@@ -96,6 +102,19 @@ public class RolesGridDataProvider extends FilterablePageableDataProvider<RolDTO
 		return service.countAnyMatchingActive(Optional.ofNullable(filter)).block().intValue();
 	}
 
+	/**
+	 * Filter typed by the user: it is debounced and its count and first page are read before it is set
+	 * (see FilterPipeline).
+	 */
+	public void submitFilter(RolFilter filter) {
+		if (filterPipeline == null)
+			filterPipeline = new FilterPipeline<>("roles",
+												  Duration.ofMillis(service.getServiceConfig().getFilterDebounceMillis()),
+												  f -> Mono.when(service.countAnyMatchingActive(Optional.of(f)), readAhead.prefetchFirstPage(f)),
+												  this::setFilter);
+		filterPipeline.submit(filter);
+	}
+
 	public void setPageObserver(Consumer<Page<RolDTO>> pageObserver) {
 		this.pageObserver = pageObserver;
 	}
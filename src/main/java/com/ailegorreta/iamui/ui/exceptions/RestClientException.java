@@ -35,6 +35,7 @@ public class RestClientException extends RuntimeException {
     public static final Integer STATUS_JSON_CONVERSION = 7;
     public static final Integer JWT_MALFORMED = 8;
     public static final Integer GENERATE_SSO_COOKIE = 9;
+    public static final Integer ENTITY_NOT_FOUND = 10;
 
     private Integer status;
 
@@ -33,6 +33,7 @@ import com.ailegorreta.iamui.ui.components.Graph;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.ailegorreta.iamui.backend.data.dto.DnDDTO;
 import com.ailegorreta.iamui.backend.data.dto.GraphDTO;
+import com.ailegorreta.iamui.backend.data.dto.GraphDelta;
 import com.ailegorreta.iamui.backend.data.service.UsuarioService;
 import com.vaadin.flow.component.AttachEvent;
 import com.vaadin.flow.component.Component;
@@ -106,9 +107,7 @@ public class Home extends ViewFrame {
 					username = event.getValue();
 					features.setVisible(username.equals(loggedUser));
 
-					var grafo = usuarioService.findGrafoFacultades(username).block();
-
-					graph.startGraph(new UsuarioFacultadesGrafo(grafo));
+					graph.startGraph(usuarioService.findGrafoFacultades(username).map(UsuarioFacultadesGrafo::new));
 				} else {
 					usuarioTextField.setValue(username);
 					UIUtils.showNotification("Usuario no existente");
@@ -137,7 +136,7 @@ public class Home extends ViewFrame {
 
 	@Override
 	protected void onAttach(AttachEvent attachEvent) {
-		graph.startGraph(new UsuarioFacultadesGrafo(usuarioService.findGrafoFacultades(username).block()));
+		graph.startGraph(usuarioService.findGrafoFacultades(username).map(UsuarioFacultadesGrafo::new));
 	}
 
 	private class UsuarioFacultadesGrafo implements GraphDTO {
@@ -162,6 +161,15 @@ public class Home extends ViewFrame {
 		public void deleteNode(@NotNull DnDDTO node) {
 		}
 
+		@Override
+		public boolean supportsDelta(@NotNull DnDDTO node) { return false; }
+
+		@Override
+		public GraphDelta addNodeDelta(@NotNull DnDDTO node) { return null; }
+
+		@Override
+		public GraphDelta deleteNodeDelta(@NotNull DnDDTO node) { return null; }
+
 		@NotNull
 		@Override
 		public String getDndDropTitle() {
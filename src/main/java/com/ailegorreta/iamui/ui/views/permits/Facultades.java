@@ -64,6 +64,7 @@ import com.ailegorreta.iamui.backend.data.dto.facultad.FacultadTipo;
 import com.ailegorreta.iamui.backend.data.service.FacultadService;
 import com.ailegorreta.iamui.ui.MainLayout;
 import com.ailegorreta.iamui.ui.dataproviders.FacultadesGridDataProvider;
+import com.ailegorreta.iamui.ui.dataproviders.GridItemCount;
 import com.ailegorreta.iamui.ui.views.SplitViewFrame;
 import org.springframework.context.annotation.Scope;
 import org.vaadin.artur.spring.dataprovider.FilterablePageableDataProvider;
@@ -132,9 +133,9 @@ public class Facultades extends SplitViewFrame implements SimpleDialog.Caller {
 		searchBar.setCheckboxText("Activas");
         searchBar.addFilterChangeListener(e -> {
              if (!searchBar.getFilter().isEmpty() || searchBar.isCheckboxChecked()) 
-            	dataProvider.setFilter(new FacultadesGridDataProvider.FacultadFilter(searchBar.getFilter(), searchBar.isCheckboxChecked()));
+            	dataProvider.submitFilter(new FacultadesGridDataProvider.FacultadFilter(searchBar.getFilter(), searchBar.isCheckboxChecked()));
              else
-            	dataProvider.setFilter(FacultadesGridDataProvider.FacultadFilter.getEmptyFilter());          
+            	dataProvider.submitFilter(FacultadesGridDataProvider.FacultadFilter.getEmptyFilter());          
         });
         searchBar.getActionButton().getElement().setAttribute("new-button", true);
         searchBar.addActionClickListener(e -> {
@@ -153,6 +154,7 @@ public class Facultades extends SplitViewFrame implements SimpleDialog.Caller {
 		grid.addSelectionListener(event -> event.getFirstSelectedItem()
 											    .ifPresent(this::showDetails));
 		grid.setItems((FilterablePageableDataProvider) dataProvider);
+		GridItemCount.setItemCount(grid, service.getServiceConfig());
 		grid.setHeightFull();
 
 		grid.addColumn(FacultadDTO::getId)
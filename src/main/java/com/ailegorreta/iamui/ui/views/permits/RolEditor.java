@@ -174,16 +174,16 @@ public class RolEditor extends LitTemplate {
 													UIUtils.showNotification("Se tiene seleccionado al rol, solo se puede seleccionar facultadas");
 												else { // do deletion
 													ArrayList<DnDDTO> unAssignFacultades = new ArrayList<DnDDTO>();
-													
+													ArrayList<AssignFacultadDTO> unAssignFacultadDTOs = new ArrayList<AssignFacultadDTO>();
+
 													itemsSelected.keySet().forEach(key -> {
 														Node 				facultadNode = binder.getBean().getGraph().node(itemsSelected.get(key));
 														FacultadDTO		  	facultad = binder.getBean().facultadById(facultadNode.getIdNeo4j());
 
-														AssignFacultadDTO 	unAssignFacultadDTO = new AssignFacultadDTO( facultad.getNombre(), binder.getBean());
-																									
-														service.unAssignPermit(unAssignFacultadDTO).block();
+														unAssignFacultadDTOs.add(new AssignFacultadDTO( facultad.getNombre(), binder.getBean()));
 														unAssignFacultades.add(facultad);
 													});
+													service.unAssignPermits(unAssignFacultadDTOs).block();	// all in one batch
 													graph.deleteNodes(unAssignFacultades);
 												}
 											} else 
@@ -239,7 +239,7 @@ public class RolEditor extends LitTemplate {
 		searchBarFacultades.setCheckboxText("Activas");
 		searchBarFacultades.setPlaceHolder("Búsqueda");
 
-		gridFacultades.setSelectionMode(Grid.SelectionMode.SINGLE);
+		gridFacultades.setSelectionMode(Grid.SelectionMode.MULTI);
 
 		gridFacultades.addSelectionListener(event -> event.getFirstSelectedItem()
 			    							              .ifPresent(this::selectFacultad));
@@ -259,29 +259,54 @@ public class RolEditor extends LitTemplate {
 		
 		searchBarFacultades.addFilterChangeListener(e -> {  
             if (!searchBarFacultades.getFilter().isEmpty() || searchBarFacultades.isCheckboxChecked()) 
-            	facultadDataProvider.setFilter(new FacultadesGridDataProvider.FacultadFilter(searchBarFacultades.getFilter(), 
+            	facultadDataProvider.submitFilter(new FacultadesGridDataProvider.FacultadFilter(searchBarFacultades.getFilter(), 
             																				 searchBarFacultades.isCheckboxChecked()));
             else
-            	facultadDataProvider.setFilter(FacultadesGridDataProvider.FacultadFilter.getEmptyFilter());          
+            	facultadDataProvider.submitFilter(FacultadesGridDataProvider.FacultadFilter.getEmptyFilter());          
 		});
 		searchBarFacultades.getActionButton().getElement().setAttribute("new-button", true);
 		searchBarFacultades.addActionClickListener(e -> {
         							if (gridFacultades.getSelectedItems().isEmpty())
 										UIUtils.showNotification("No se ha seleccionado una facultad");
-        							else {
-        								FacultadDTO 		facultad = (FacultadDTO)gridFacultades.getSelectedItems().toArray()[0];
-        								AssignFacultadDTO 	item = new AssignFacultadDTO(facultad.getNombre(), binder.getBean());
-
-										if (binder.getBean().getId() == null || binder.getBean().getId() <= 0)
-										   UIUtils.showNotification("El rol  " + binder.getBean().getNombre() +
-												   					" es nuevo rol. Guardar primero el rol antes de asignarles facultades");
-        								else if (item.validate())
-        									graph.itemDropped(facultad, true, item);
-        								else
-    										UIUtils.showNotification("La facultad " + facultad.getNombre() + " ya está asignada al rol " + binder.getBean().getNombre());        									
-        							}
+        							else
+        								assignFacultades(gridFacultades.getSelectedItems());
         						});
 	}
+
+	/*
+	 * One facultad is saved by the graph SaveEvent, many facultades (i.e., a multi-item drop or
+	 * selection) are assigned in one batch and then added to the graph.
+	 */
+	private void assignFacultades(Collection<FacultadDTO> facultades) {
+		if (binder.getBean().getId() == null || binder.getBean().getId() <= 0) {
+			UIUtils.showNotification("El rol  " + binder.getBean().getNombre() +
+									 " es nuevo rol. Guardar primero el rol antes de asignarles facultades");
+			return;
+		}
+
+		List<FacultadDTO> 		assigned = new ArrayList<>();
+		List<AssignFacultadDTO> items = new ArrayList<>();
+
+		for (FacultadDTO facultad : facultades) {
+			AssignFacultadDTO item = new AssignFacultadDTO(facultad.getNombre(), binder.getBean());
+
+			if (item.validate()) {
+				assigned.add(facultad);
+				items.add(item);
+			} else
+				UIUtils.showNotification("La facultad " + facultad.getNombre() + " ya está asignada al rol " + binder.getBean().getNombre());
+		}
+		if (items.size() == 1)
+			graph.itemDropped(assigned.get(0), true, items.get(0));
+		else if (!items.isEmpty())
+			try {
+				service.assignPermits(items).block();	// all in one batch
+				graph.addNodes(assigned);
+			} catch (Exception e) {
+				UIUtils.showNotification("Error al asignar las facultades al rol:" + e.getMessage());
+				e.printStackTrace();
+			}
+	}
 	
 	private void createDndFunctionality() {
 		gridFacultades.setRowsDraggable(true);
@@ -292,16 +317,7 @@ public class RolEditor extends LitTemplate {
 			if (draggedItems == null || draggedItems.isEmpty()) 
 				draggedItems=null;
 			else {
-				FacultadDTO			facultad = draggedItems.iterator().next();
-				AssignFacultadDTO 	item = new AssignFacultadDTO(facultad.getNombre(), binder.getBean());
-
-				if (binder.getBean().getId() == null || binder.getBean().getId() <= 0)
-					UIUtils.showNotification("El rol  " + binder.getBean().getNombre() +
-											 " es nuevo rol. Guardar primero el rol antes de asignarles facultades");
-				else if (item.validate())
-					graph.itemDropped(facultad, true, item );
-				else
-					UIUtils.showNotification("La facultad " + facultad.getNombre() + " ya está asignada al rol " + binder.getBean().getNombre());        														
+				assignFacultades(draggedItems);
 				draggedItems = null;
 			}
 		});
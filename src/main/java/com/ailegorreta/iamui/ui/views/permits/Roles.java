@@ -50,6 +50,7 @@ import com.ailegorreta.iamui.backend.data.service.RolService;
 import com.ailegorreta.iamui.ui.MainLayout;
 import com.ailegorreta.iamui.ui.components.Graph;
 import com.ailegorreta.iamui.ui.dataproviders.RolesGridDataProvider;
+import com.ailegorreta.iamui.ui.dataproviders.GridItemCount;
 import com.ailegorreta.iamui.ui.dataproviders.RolFilter;
 import com.ailegorreta.iamui.ui.views.SplitViewFrame;
 import org.springframework.context.annotation.Scope;
@@ -124,9 +125,9 @@ public class Roles extends SplitViewFrame implements SimpleDialog.Caller {
         searchBar.setPlaceHolder("Búsqueda");
         searchBar.addFilterChangeListener(e -> {  
              if (!searchBar.getFilter().isEmpty() || searchBar.isCheckboxChecked()) 
-            	dataProvider.setFilter(new RolFilter(searchBar.getFilter(), searchBar.isCheckboxChecked()));
+            	dataProvider.submitFilter(new RolFilter(searchBar.getFilter(), searchBar.isCheckboxChecked()));
              else
-            	dataProvider.setFilter(RolFilter.getEmptyFilter());          
+            	dataProvider.submitFilter(RolFilter.getEmptyFilter());          
         });
         searchBar.getActionButton().getElement().setAttribute("new-button", true);
         searchBar.addActionClickListener(e -> {
@@ -145,6 +146,7 @@ public class Roles extends SplitViewFrame implements SimpleDialog.Caller {
 		grid.addSelectionListener(event -> event.getFirstSelectedItem()
 											    .ifPresent(this::showDetails));
 		grid.setItems((FilterablePageableDataProvider) dataProvider);
+		GridItemCount.setItemCount(grid, service.getServiceConfig());
 		grid.setHeightFull();
 
 		grid.addColumn(RolDTO::getId)
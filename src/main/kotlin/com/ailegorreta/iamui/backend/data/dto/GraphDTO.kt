@@ -41,4 +41,14 @@ interface GraphDTO {
 	fun addNode(mapper: ObjectMapper, node: DnDDTO): String
 	
 	fun deleteNode(node: DnDDTO)
+
+	/**
+	 * Same as addNode and deleteNode but they return just the changes of the graph. A null
+	 * means that the DTO does not support deltas and the whole graph must be sent.
+	 */
+	fun supportsDelta(node: DnDDTO): Boolean = false
+
+	fun addNodeDelta(node: DnDDTO): GraphDelta? = null
+
+	fun deleteNodeDelta(node: DnDDTO): GraphDelta? = null
 }
@@ -0,0 +1,77 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  GraphDelta.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.iamui.backend.data.dto
+
+import com.fasterxml.jackson.databind.ObjectMapper
+
+/**
+ * Changes of a graph already rendered by graph.js (see applyGraphDelta). When a node is dragged
+ * or deleted we send just these changes and not the whole graph again.
+ *
+ * The node ids of the graph are kept, so the delta can refer to them.
+ *
+ * @author rlh
+ * @project : iam-ui
+ * @date September 2023
+ */
+data class GraphDelta(val addNodes: List<Node> = emptyList(),
+                      val addEdges: List<Link> = emptyList(),
+                      val removeNodes: List<Int> = emptyList()) {
+
+    operator fun plus(other: GraphDelta) = GraphDelta(addNodes + other.addNodes,
+                                                      addEdges + other.addEdges,
+                                                      removeNodes + other.removeNodes)
+
+    fun jsonString(mapper: ObjectMapper): String = mapper.writeValueAsString(this)
+
+    companion object {
+        const val ROOT_NODE = 1
+
+        /**
+         * Adds the node (created with a new id) as child of the root node.
+         */
+        fun addChild(nodes: MutableList<Node>, edges: MutableList<Link>,
+                     caption: String, child: (Int) -> Node): GraphDelta {
+            val node = child((nodes.maxOfOrNull { it.id } ?: 0) + 1)
+            val edge = Link(source = ROOT_NODE, target = node.id, caption = caption)
+
+            nodes.add(node)
+            edges.add(edge)
+
+            return GraphDelta(addNodes = listOf(node), addEdges = listOf(edge))
+        }
+
+        /**
+         * Removes the nodes of the entity (and their edges).
+         */
+        fun removeNode(nodes: MutableList<Node>, edges: MutableList<Link>,
+                       idNeo4j: Long?, type: String): GraphDelta {
+            val removed = nodes.filter { it.idNeo4j == idNeo4j && it.type == type }.map { it.id }
+
+            nodes.removeIf { removed.contains(it.id) }
+            edges.removeIf { removed.contains(it.source) || removed.contains(it.target) }
+
+            return GraphDelta(removeNodes = removed)
+        }
+    }
+}
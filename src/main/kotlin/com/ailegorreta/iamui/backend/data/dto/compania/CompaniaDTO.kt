@@ -24,8 +24,9 @@ package com.ailegorreta.iamui.backend.data.dto.compania
 
 import java.util.*
 import com.fasterxml.jackson.annotation.*
-import com.ailegorreta.commons.dtomappers.EntityDTOMapper
 import com.vaadin.flow.shared.util.SharedUtil
+import io.micrometer.core.instrument.DistributionSummary
+import io.micrometer.core.instrument.Metrics
 import java.time.LocalDateTime
 
 /**
@@ -45,33 +46,52 @@ data class CompaniaDTO @JvmOverloads constructor(val id : Long? = null,
                                                  var activo: Boolean,
                                                  var idPersona: Long,
                                                  var areas: Collection<AreaDTO> = ArrayList(),
-                                                 var subsidiarias: Collection<CompaniaDTO> = ArrayList()) {
+                                                 var subsidiarias: Collection<CompaniaDTO> = ArrayList(),
+                                                 var numAreas: Int = 0) {
 
     /*
-     * Do the mapping from AreaDTO to CompaniaDTO just in order to have a TreeGrid
+     * When the Companies are read without their areas (lazy areas) just numAreas is received.
      */
-    companion object : EntityDTOMapper<AreaDTO, CompaniaDTO> {
-        override var dtos = HashMap<Int, Any>()
+    fun hasAreas() = areas.isNotEmpty() || numAreas > 0
 
-        override fun fromEntityRecursive(entity: AreaDTO): CompaniaDTO {
-            val a = dtos.get(entity.hashCode())
+    fun areasCount() = if (areas.isNotEmpty()) areas.size else numAreas
 
-            if (a != null)
-                return a as CompaniaDTO
+    /*
+     * Do the mapping from AreaDTO to CompaniaDTO just in order to have a TreeGrid.
+     *
+     * The identity map of the mapping is local to each call (see fromAreas) and not a static
+     * one: the companion is shared by all Vaadin sessions and a static HashMap was neither
+     * thread-safe nor bounded.
+     */
+    companion object {
+        private val mappedSizes = DistributionSummary.builder("iam.ui.dto.mapping.size")
+                                                     .description("DTOs mapped in one fromAreas call")
+                                                     .tag("dto", "CompaniaDTO")
+                                                     .register(Metrics.globalRegistry)
 
-            val companiaDTO =  CompaniaDTO(id = entity.id,
-                                           nombre = entity.nombre,
-                                           padre = false,
-                                           negocio = Negocio.NA,
-                                           usuarioModificacion = entity.usuarioModificacion,
-                                           fechaModificacion = entity.fechaModificacion,
-                                           activo = entity.activo,
-                                           idPersona = entity.idArea)
+        /**
+         * Maps all the areas of one company, the same area (by hashCode) is mapped once.
+         */
+        fun fromAreas(areas: Collection<AreaDTO>): List<CompaniaDTO> {
+            val mapped = HashMap<Int, CompaniaDTO>()
+            val companias = areas.map { fromArea(it, mapped) }
 
-            dtos.put(entity.hashCode(), companiaDTO)
+            mappedSizes.record(mapped.size.toDouble())
 
-            return companiaDTO
+            return companias
         }
+
+        private fun fromArea(entity: AreaDTO, mapped: MutableMap<Int, CompaniaDTO>) =
+            mapped.getOrPut(entity.hashCode()) {
+                CompaniaDTO(id = entity.id,
+                            nombre = entity.nombre,
+                            padre = false,
+                            negocio = Negocio.NA,
+                            usuarioModificacion = entity.usuarioModificacion,
+                            fechaModificacion = entity.fechaModificacion,
+                            activo = entity.activo,
+                            idPersona = entity.idArea)
+            }
     }
 
     override fun equals(other: Any?): Boolean {
@@ -74,6 +74,28 @@ data class PerfilDTO @JvmOverloads constructor(var id : Long? = null,
 			roles.remove(node)		
 	}
 
+	override fun supportsDelta(node: DnDDTO) = graph != null && node is RolDTO
+
+	override fun addNodeDelta(node: DnDDTO): GraphDelta? {
+		val graph = graph ?: return null
+
+		if (node !is RolDTO) return null
+		roles.add(node)
+
+		return GraphDelta.addChild(graph.nodes, graph.edges, "rol") {
+			Node(id = it, idNeo4j = node.id!!, caption = node.nombre, subType = node.activo, type = "rol")
+		}
+	}
+
+	override fun deleteNodeDelta(node: DnDDTO): GraphDelta? {
+		val graph = graph ?: return null
+
+		if (node !is RolDTO) return null
+		roles.remove(node)
+
+		return GraphDelta.removeNode(graph.nodes, graph.edges, node.id, "rol")
+	}
+
 	fun rolById(id : Long): RolDTO? {
 		roles.forEach{ if (it.id == id) return it}
 		
@@ -105,8 +127,8 @@ data class PerfilDTO @JvmOverloads constructor(var id : Long? = null,
  * that generates this graph.
  *
  */
-data class GraphPerfilRol(val nodes: List<Node>,
-						  val edges: List<Link>) {
+data class GraphPerfilRol(val nodes: MutableList<Node>,
+						  val edges: MutableList<Link>) {
 		
     companion object {
 				
@@ -72,6 +72,28 @@ data class RolDTO @JvmOverloads constructor(override var id : Long? = null,
 		if (node is FacultadDTO)
 			facultades.remove(node)		
 	}
+
+	override fun supportsDelta(node: DnDDTO) = graph != null && node is FacultadDTO
+
+	override fun addNodeDelta(node: DnDDTO): GraphDelta? {
+		val graph = graph ?: return null
+
+		if (node !is FacultadDTO) return null
+		facultades.add(node)
+
+		return GraphDelta.addChild(graph.nodes, graph.edges, "permiso") {
+			Node(id = it, idNeo4j = node.id!!, caption = node.nombre, subType = node.activo, type = "facultad")
+		}
+	}
+
+	override fun deleteNodeDelta(node: DnDDTO): GraphDelta? {
+		val graph = graph ?: return null
+
+		if (node !is FacultadDTO) return null
+		facultades.remove(node)
+
+		return GraphDelta.removeNode(graph.nodes, graph.edges, node.id, "facultad")
+	}
 	
 	fun facultadById(id : Long): FacultadDTO? {
 		facultades.forEach{ if (it.id == id) return it}
@@ -104,8 +126,8 @@ data class RolDTO @JvmOverloads constructor(override var id : Long? = null,
  * that generates this graph.
  *
  */
-data class GraphRolFacultad(val nodes: List<Node>,
-							val edges: List<Link>) {
+data class GraphRolFacultad(val nodes: MutableList<Node>,
+							val edges: MutableList<Link>) {
 		
     companion object {
 		fun mapFromEntity(rol : RolDTO) : GraphRolFacultad {
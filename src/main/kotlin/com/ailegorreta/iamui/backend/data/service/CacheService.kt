@@ -22,6 +22,7 @@
  */
 package com.ailegorreta.iamui.backend.data.service
 
+import com.ailegorreta.iamui.security.config.RemoteCallMetricsFilter.operation
 import com.ailegorreta.commons.utils.HasLogger
 import com.ailegorreta.iamui.config.ServiceConfig
 import org.asynchttpclient.Dsl.request
@@ -32,30 +33,123 @@ import org.springframework.security.oauth2.client.web.reactive.function.client.S
 import org.springframework.stereotype.Service
 import org.springframework.web.reactive.function.client.WebClient
 import org.springframework.web.util.UriComponentsBuilder
+import io.micrometer.core.instrument.Gauge
+import io.micrometer.core.instrument.Metrics
+import reactor.core.publisher.Mono
+import java.time.Duration
+import java.time.Instant
 import java.time.LocalDate
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicReference
 
 
 /**
  * CacheService to communicate to the cache server microservice
  *
+ * It keeps the system date for all the application (see systemDate), so a new UI does not wait the
+ * cache microservice.
+ *
  * @author rlh
  * @project iam-ui
  * @date July 2023
  */
 @Service
-class CacheService(@Qualifier("authorization_code") val webClient: WebClient,
+class CacheService(@Qualifier("authorization_code_cache") val webClient: WebClient,
                    private val serviceConfig: ServiceConfig) : HasLogger {
 
     fun uri(): UriComponentsBuilder = UriComponentsBuilder.fromUriString(serviceConfig.getCacheProvider())
 
-    fun getDay(days: Int): LocalDate? = webClient.get()
-                                                .uri(uri().path("/cache/day")
-                                                    .queryParam("days", days)
-                                                    .build().toUri())
+    private val inFlightGets = SingleFlight("CacheService")
+
+    /* system date: last good value read from the cache microservice */
+    private val systemDate = AtomicReference<LocalDate?>()
+    @Volatile private var loadedAt: Instant? = null
+    @Volatile private var checkedOn: LocalDate? = null
+    @Volatile private var lastAttempt = Instant.EPOCH
+    /* just one request reads (or refreshes) the date at a time */
+    private val refreshing = AtomicBoolean(false)
+
+    init {
+        Gauge.builder("iam.ui.system.date.staleness", this) { cacheService ->
+                cacheService.loadedAt?.let { Duration.between(it, Instant.now()).seconds.toDouble() } ?: Double.NaN
+             }
+             .baseUnit("seconds")
+             .description("Seconds since the system date was read from the cache microservice")
+             .register(Metrics.globalRegistry)
+    }
+
+    fun day(days: Int): Mono<LocalDate> {
+        val uri = uri().path("/cache/day")
+                       .queryParam("days", days)
+                       .build().toUri()
+
+        return inFlightGets.get("getDay", uri, webClient.get()
+                                                .uri(uri)
                                                  .attributes(clientRegistrationId(serviceConfig.securityClientId + "-oidc"))
+                                                 .attributes(operation("CacheService.getDay"))
                                 //.attributes(oauth2AuthorizedClient(client))
                                 // .attributes(ServerOAuth2AuthorizedClientExchangeFilterFunction.clientRegistrationId(serviceConfig.securityClientId + "-client-credentials"))
                                                 .retrieve()
-                                                .bodyToMono(LocalDate::class.java)
-                                                .block()
+                                                .bodyToMono(LocalDate::class.java))
+    }
+
+    fun getDay(days: Int): LocalDate? = day(days).block()
+
+    /**
+     * Application wide system date. It is read once and then:
+     *
+     * - Refreshed in background by the first request after microservice.cache.system-date.refresh-seconds.
+     * - Read again (waiting at most timeout-millis) by the first request after midnight. Just one request
+     *   reads it, the others return the last good date.
+     * - If the cache microservice fails, the last good date is returned (or the local date if there is none)
+     *   and it is not read again until retry-seconds, so the requests do not wait for a service that is down.
+     *
+     * The calls to the cache microservice need the user token (authorization_code), so they are done in
+     * a request thread and not in a scheduler.
+     */
+    fun systemDate(): LocalDate {
+        val date = systemDate.get()
+        val today = LocalDate.now()
+
+        if (date == null || checkedOn != today) {
+            if (Duration.between(lastAttempt, Instant.now()).seconds >= serviceConfig.systemDateRetrySeconds &&
+                refreshing.compareAndSet(false, true))
+                try {
+                    val loaded = readSystemDate()
+
+                    if (loaded != null) {
+                        checkedOn = today
+                        return loaded
+                    }
+                } finally {
+                    refreshing.set(false)
+                }
+            if (date == null) {
+                logger.warn("No se tiene la fecha del sistema del servicio de cache, se utiliza la fecha local")
+                return today
+            }
+        } else if (Duration.between(loadedAt, Instant.now()).seconds >= serviceConfig.systemDateRefreshSeconds &&
+                   refreshing.compareAndSet(false, true))
+            day(0).doFinally { refreshing.set(false) }
+                  .subscribe({ loaded(it) },
+                             { logger.warn("No se pudo actualizar la fecha del sistema, se utiliza la última: $date", it) })
+
+        return date
+    }
+
+    private fun readSystemDate(): LocalDate? {
+        lastAttempt = Instant.now()
+
+        return try {
+            day(0).block(Duration.ofMillis(serviceConfig.systemDateTimeoutMillis))?.also { loaded(it) }
+        } catch (e: Exception) {
+            logger.error("El servicio de consulta de la fecha del sistema esta fuera de línea", e)
+            null
+        }
+    }
+
+    private fun loaded(date: LocalDate) {
+        systemDate.set(date)
+        loadedAt = Instant.now()
+    }
 }
@@ -23,11 +23,24 @@
 package com.ailegorreta.iamui.backend.data.service
 
 import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.databind.ObjectReader
 import com.ailegorreta.iamui.config.ServiceConfig
+import com.github.benmanes.caffeine.cache.Cache
+import com.github.benmanes.caffeine.cache.Caffeine
+import io.micrometer.core.instrument.Counter
+import io.micrometer.core.instrument.Metrics
+import io.micrometer.core.instrument.binder.cache.CaffeineStatsCounter
 import org.springframework.cloud.circuitbreaker.resilience4j.ReactiveResilience4JCircuitBreakerFactory
+import org.springframework.web.reactive.function.client.ClientResponse
 import org.springframework.web.reactive.function.client.WebClient
 import org.springframework.web.util.UriComponentsBuilder
+import reactor.core.publisher.Flux
 import reactor.core.publisher.Mono
+import reactor.util.context.Context
+import java.net.URI
+import java.time.Duration
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicBoolean
 
 /**
  * ClientWebController abstract class that generates all Web client REST services
@@ -42,13 +55,119 @@ abstract class ClientWebController(val mapper: ObjectMapper,
                                    val serviceConfig: ServiceConfig,
                                    circuitBreakerFactory: ReactiveResilience4JCircuitBreakerFactory? = null) {
 
-    protected val circuitBreaker = circuitBreakerFactory?.create("webController")
+    /* one breaker (with the fallbacks) per service, the remote operations have their own with the same settings (see ServiceConfig.circuitBreakerConfig) */
+    protected val circuitBreaker = circuitBreakerFactory?.create(javaClass.simpleName)
+
+    /**
+     * Total counts read by the paged queries and by the count queries, keyed by filter (see
+     * CustomWebClientService.cachedCount). Just the most recent filters are kept since every new
+     * filter typed by the user is a new key, and they expire so the counts modified by other
+     * users are read again. The modifications done with invalidating clear them.
+     *
+     * The counts are shared by all sessions, so the key includes the authorization scope of the
+     * user (see SingleFlight.scope) and a user never reads a count its authorities do not allow.
+     */
+    val pageCounts: Cache<CountKey, Long> = Caffeine.newBuilder()
+                                                    .maximumSize(MAX_PAGE_COUNTS)
+                                                    .expireAfterWrite(Duration.ofSeconds(serviceConfig.countCacheTtlSeconds))
+                                                    .recordStats { CaffeineStatsCounter(Metrics.globalRegistry, COUNTS_CACHE_NAME) }
+                                                    .build()
+
+    data class CountKey(val filter: String, val scope: Set<String>)
+
+    /**
+     * Key of a count for the current user, so it must be called in the request thread.
+     */
+    fun countKey(filter: String) = CountKey(filter, SingleFlight.scope())
+
+    /**
+     * Services that read Facultades, Roles or Perfiles override this flag to use the session
+     * EntityCache in their single entity look-ups (see CustomWebClientService.cached).
+     */
+    open val cachedEntities = false
+
+    fun entityCache(): EntityCache? = if (cachedEntities) EntityCache.current(serviceConfig) else null
+
+    private val inFlightGets = SingleFlight(javaClass.simpleName)
+
+    /**
+     * Idempotent GET that is shared with the identical GETs already in flight (see SingleFlight).
+     */
+    fun <R : Any> singleFlight(operation: String, uri: URI, remote: Mono<R>, copy: (R) -> R = { it }): Mono<R> =
+        inFlightGets.get(operation, uri, remote, copy)
+
+    private val staleCache = StaleCache(javaClass.simpleName, serviceConfig.staleMaximumSize,
+                                        Duration.ofMillis(serviceConfig.breakerWaitOpenMillis))
+
+    /**
+     * Remote query that returns its last successful response, marked stale, when it fails (see StaleCache).
+     */
+    fun <R> staleWhileRevalidate(key: Any, remote: Mono<R>, copy: (R) -> R = { it }): Mono<R> =
+        if (serviceConfig.staleEnabled) staleCache.get(key, remote, copy) else remote
+
+    /**
+     * Stale response of the key for the fallback of the circuitBreaker, that does not subscribe the
+     * query while it is open (see StaleCache.fallback). Null when there is none, so the fallback
+     * returns its empty response.
+     */
+    fun <R> staleFallback(key: Any, copy: (R) -> R = { it }): (Throwable) -> R? =
+        if (serviceConfig.staleEnabled) staleCache.fallback(key, copy) else { _ -> null }
+
+    private val conditionalGets = ConditionalGets(javaClass.simpleName, serviceConfig.conditionalGetMaximumSize)
+
+    /**
+     * GET with If-None-Match/If-Modified-Since that reuses the decoded response on 304 (see ConditionalGets).
+     */
+    fun <R> conditionalGet(operation: String, uri: URI, request: () -> WebClient.RequestHeadersSpec<*>,
+                           decode: (ClientResponse) -> Mono<R>, copy: (R) -> R = { it }): Mono<R> =
+        conditionalGets.get(operation, uri, request, decode, copy)
+
+    /**
+     * Invalidates the counts and the cached entities of the types once the modification (i.e., the
+     * Mono) finishes. The cache is read at call time since the Mono can end in a thread without
+     * Vaadin session.
+     */
+    fun <R> invalidating(modification: Mono<R>, vararg types: Class<*>): Mono<R> {
+        val entityCache = entityCache()
+
+        return modification.doFinally {
+            pageCounts.invalidateAll()
+            entityCache?.invalidate(*types)
+        }
+    }
+
+    /**
+     * Sends a modification for every item (e.g., assign many Facultades to a Rol). The iam-service
+     * has no batch end-points, so the requests are sent concurrently, with at most
+     * serviceConfig.batchConcurrency in flight, and the Mono ends when all of them end. The results
+     * keep the order of the items.
+     */
+    fun <I, R : Any> batch(items: Collection<I>, modification: (I) -> Mono<R>): Mono<List<R>> =
+        Flux.fromIterable(items)
+            .flatMapSequential({ modification(it) }, serviceConfig.batchConcurrency)
+            .collectList()
+
+    private val readers = ConcurrentHashMap<Class<*>, ObjectReader>()
+
+    /**
+     * Jackson readers are immutable and thread safe, so we keep one per DTO class instead of
+     * looking up the deserializer every time.
+     */
+    fun reader(clazz: Class<*>): ObjectReader = readers.computeIfAbsent(clazz) { mapper.readerFor(it) }
 
     fun uri() = UriComponentsBuilder.fromUriString(serviceConfig.securityIAMProvider)
 
     fun provider() = serviceConfig.securityClientId + "-oidc"
     // ^ use the authentication_code not the credentials_code
 
+    /**
+     * Counter of the remote calls done by this service for a method. It is registered in the global
+     * registry, so it is exported with the rest of the actuator metrics.
+     */
+    fun remoteRequests(method: String): Counter = Metrics.counter("iam.ui.remote.requests",
+                                                                  "service", javaClass.simpleName,
+                                                                  "method", method)
+
     abstract fun controller(): ClientWebController
 
     abstract val baseUrlSingle: String
@@ -61,4 +180,25 @@ abstract class ClientWebController(val mapper: ObjectMapper,
 
     abstract fun switchIfEmpty(): Mono<*>
 
+    companion object {
+        const val MAX_PAGE_COUNTS = 256L
+        const val COUNTS_CACHE_NAME = "iam.counts"
+        private const val FALLBACK = "iam.fallback"
+
+        /**
+         * Response of a circuit breaker fallback or a stale response (see StaleCache). It sets the
+         * flag of the subscriber (see withFallbackFlag), so the callers that cache the responses
+         * (e.g., PageReadAhead) do not cache it.
+         */
+        fun <R> fallback(response: Mono<R>): Mono<R> = Mono.deferContextual { context ->
+            context.getOrEmpty<AtomicBoolean>(FALLBACK).ifPresent { it.set(true) }
+            response
+        }
+
+        /**
+         * Subscribes remote with the flag that is set when the response is a fallback one.
+         */
+        fun <R> withFallbackFlag(remote: Mono<R>, flag: AtomicBoolean): Mono<R> =
+            remote.contextWrite(Context.of(FALLBACK, flag))
+    }
 }
@@ -22,25 +22,24 @@
  */
 package com.ailegorreta.iamui.backend.data.service
 
-import com.fasterxml.jackson.databind.JsonNode
+import com.ailegorreta.iamui.security.config.RemoteCallMetricsFilter.operation
 import com.fasterxml.jackson.databind.ObjectMapper
+import com.ailegorreta.iamui.backend.data.dto.compania.AreaDTO
 import com.ailegorreta.iamui.backend.data.dto.compania.CompaniaDTO
 import com.ailegorreta.iamui.backend.data.dto.compania.Negocio
 import com.ailegorreta.iamui.config.ServiceConfig
 import com.ailegorreta.iamui.ui.dataproviders.CompaniaFilter
-import com.ailegorreta.iamui.ui.exceptions.RestClientException
 import org.springframework.beans.factory.annotation.Qualifier
 import org.springframework.data.domain.Page
+import org.springframework.data.domain.PageRequest
 import org.springframework.data.domain.Pageable
-import org.springframework.data.support.PageableExecutionUtils
 import org.springframework.security.oauth2.client.web.reactive.function.client.ServerOAuth2AuthorizedClientExchangeFilterFunction.clientRegistrationId
 import org.springframework.stereotype.Service
 import org.springframework.web.reactive.function.client.WebClient
+import org.springframework.web.util.UriComponentsBuilder
 import reactor.core.publisher.Mono
-import java.io.IOException
 import java.time.Duration
 import java.util.*
-import java.util.function.LongSupplier
 
 /**
  * CompaniaService to communicate to IAM-server-repo for Companies
@@ -64,124 +63,108 @@ class CompaniaService: ClientWebController, CustomWebClientService<CompaniaDTO>
     override fun switchIfEmpty() = Mono.just(arrayOfNulls<CompaniaDTO>(0))
     override fun controller() = this
 
-    override fun toObject(res: String) = toObject(mapper, res, CompaniaDTO::class.java)
-
-    override fun toList(res: String): List<CompaniaDTO> {
-        val companias = ArrayList<CompaniaDTO>()
+    private val catalog = EntityCatalog(mapper, CompaniaDTO::class.java,
+                                        Duration.ofSeconds(serviceConfig.catalogTtlSeconds),
+                                        serviceConfig.catalogMaximumSize, serviceConfig.batchConcurrency,
+                                        { it.id }, { it.nombre })
 
-        try {
-            val json: JsonNode = mapper.readValue(res, JsonNode::class.java)
+    override fun toObject(res: String) = toObject(mapper, res, CompaniaDTO::class.java)
 
-            if (json.isArray)
-                json.forEach {
-                    companias.add(toObject(mapper, it.toString(), CompaniaDTO::class.java))
-                }
-            else
-                throw RestClientException(RestClientException.STATUS_JSON_CONVERSION, "Se espera una array")
-        } catch (e: IOException) {
-            throw RestClientException(RestClientException.STATUS_JSON_CONVERSION, e)
-        }
+    override fun toList(res: String) = toList(res, CompaniaDTO::class.java)
 
-        return companias
-    }
+    /*
+     * With lazy areas the Companies are requested without their areas, just with numAreas
+     * (see findAreas)
+     */
+    private fun UriComponentsBuilder.lazyAreas() =
+        if (serviceConfig.companiaLazyAreas) queryParam("areas", false) else this
 
     override fun count(): Mono<Long> {
-        return controller().webclient.get()
+        return cachedCount("clientes", controller().webclient.get()
             .uri(controller().uri().path("/${controller().baseUrlMany}/clientes/count")
                 .build().toUri())
             .attributes(clientRegistrationId(controller().provider()))
+            .attributes(operation("CompaniaService.countClientes"))
             .retrieve()
-            .bodyToMono(Long::class.java)
+            .bodyToMono(Long::class.java))
     }
 
     override fun findAll(pageable: Pageable): Page<CompaniaDTO> {
-        val res =  controller().webclient.get()
-            .uri(controller().uri().path("/${controller().baseUrlMany}/clientes")
-                .queryParam("page", pageable.pageNumber)
-                .queryParam("size", pageable.pageSize)
-                .queryParam("sort", pageable.sort)
-                .build().toUri())
-            .attributes(clientRegistrationId(controller().provider()))
-            .retrieve()
-            .bodyToMono(controller().clazzes())
-            .timeout(Duration.ofMillis(10_000))
-            .switchIfEmpty(controller().switchIfEmpty() as Mono<out Nothing>)
-            .doOnNext { s -> logger.debug("Found companias: {}", (s as Array<CompaniaDTO>).contentToString()) }
-            .map{ elements -> listOf(elements) }
-                as  Mono<List<CompaniaDTO>>
+        val elements = findElements("findAll",
+                                    controller().uri().path("/${controller().baseUrlMany}/clientes")
+                                        .queryParam("page", pageable.pageNumber)
+                                        .queryParam("size", pageable.pageSize)
+                                        .queryParam("sort", pageable.sort)
+                                        .lazyAreas()
+                                        .build().toUri(), true)
 
-        val total = LongSupplier { count().block()!! }
-        val elements = res.block()!!.first() as Array<CompaniaDTO>
+        return findPage("clientes", pageable, elements, count())
+    }
+
+    override fun findByName(filter: String, pageable: Pageable): Page<CompaniaDTO> {
+        val elements = findElements("findByName",
+                                    controller().uri().path("/${controller().baseUrlMany}/nombre")
+                                        .queryParam("nombre", filter.trim { it <= ' ' })
+                                        .queryParam("page", pageable.pageNumber)
+                                        .queryParam("size", pageable.pageSize)
+                                        .queryParam("sort", pageable.sort)
+                                        .lazyAreas()
+                                        .build().toUri())
 
-        return PageableExecutionUtils.getPage(elements.toMutableList(), pageable, total)
+        return findPage("nombre:${filter.trim { it <= ' ' }}", pageable, elements, countByName(filter))
     }
 
     fun countByNombreNegocio(filter: String, negocio: String): Mono<Long> {
-        return controller().webclient.get()
+        return cachedCount("nombre/negocio:${filter.trim { it <= ' ' }}:${negocio.trim { it <= ' ' }}", controller().webclient.get()
             .uri(controller().uri().path("/${controller().baseUrlMany}/nombre/negocio/count")
                 .queryParam("nombre", filter.trim { it <= ' ' })
                 .queryParam("negocio", negocio.trim { it <= ' ' })
                 .build().toUri())
             .attributes(clientRegistrationId(controller().provider()))
+            .attributes(operation("CompaniaService.countByNombreNegocio"))
             .retrieve()
-            .bodyToMono(Long::class.java)
+            .bodyToMono(Long::class.java))
             .cast(Long::class.java)
     }
 
     fun findByNombreNegocio(filter: String, negocio:String, pageable: Pageable): Page<CompaniaDTO> {
-        val res =  controller().webclient.get()
-            .uri(controller().uri().path("/${controller().baseUrlMany}/nombre/negocio")
-                .queryParam("nombre", filter.trim { it <= ' ' })
-                .queryParam("negocio", negocio.trim { it <= ' ' })
-                .queryParam("page", pageable.pageNumber)
-                .queryParam("size", pageable.pageSize)
-                .queryParam("sort", pageable.sort)
-                .build().toUri())
-            .attributes(clientRegistrationId(controller().provider()))
-            .retrieve()
-            .bodyToMono(controller().clazzes())
-            .timeout(Duration.ofMillis(10_000))
-            .switchIfEmpty(controller().switchIfEmpty() as Mono<out Nothing>)
-            .doOnNext { s -> logger.debug("Found companias: {}", (s as Array<CompaniaDTO>).contentToString()) }
-            .map{ elements -> listOf(elements) }
-                as  Mono<List<CompaniaDTO>>
-
-        val total = LongSupplier { count().block()!! }
+        val elements = findElements("findByNombreNegocio",
+                                    controller().uri().path("/${controller().baseUrlMany}/nombre/negocio")
+                                        .queryParam("nombre", filter.trim { it <= ' ' })
+                                        .queryParam("negocio", negocio.trim { it <= ' ' })
+                                        .queryParam("page", pageable.pageNumber)
+                                        .queryParam("size", pageable.pageSize)
+                                        .queryParam("sort", pageable.sort)
+                                        .lazyAreas()
+                                        .build().toUri())
 
-        return PageableExecutionUtils.getPage(res.block()!!.toMutableList(), pageable, total)
+        return findPage("nombre/negocio:${filter.trim { it <= ' ' }}:${negocio.trim { it <= ' ' }}", pageable,
+                        elements, countByNombreNegocio(filter, negocio))
     }
 
     fun countByNegocio(negocio: String): Mono<Long> {
-        return controller().webclient.get()
+        return cachedCount("negocio:${negocio.trim { it <= ' ' }}", controller().webclient.get()
             .uri(controller().uri().path("/${controller().baseUrlMany}/negocio/count")
                 .queryParam("negocio", negocio.trim { it <= ' ' })
                 .build().toUri())
             .attributes(clientRegistrationId(controller().provider()))
+            .attributes(operation("CompaniaService.countByNegocio"))
             .retrieve()
-            .bodyToMono(Long::class.java)
+            .bodyToMono(Long::class.java))
             .cast(Long::class.java)
     }
 
     fun findByNegocio(negocio: String, pageable: Pageable): Page<CompaniaDTO> {
-        val res =  controller().webclient.get()
-            .uri(controller().uri().path("/${controller().baseUrlMany}/negocio")
-                .queryParam("negocio", negocio.trim { it <= ' ' })
-                .queryParam("page", pageable.pageNumber)
-                .queryParam("size", pageable.pageSize)
-                .queryParam("sort", pageable.sort)
-                .build().toUri())
-            .attributes(clientRegistrationId(controller().provider()))
-            .retrieve()
-            .bodyToMono(controller().clazzes())
-            .timeout(Duration.ofMillis(10_000))
-            .switchIfEmpty(controller().switchIfEmpty() as Mono<out Nothing>)
-            .doOnNext { s -> logger.debug("Found companias: {}", (s as Array<CompaniaDTO>).contentToString()) }
-            .map{ elements -> listOf(elements) }
-                as  Mono<List<CompaniaDTO>>
+        val elements = findElements("findByNegocio",
+                                    controller().uri().path("/${controller().baseUrlMany}/negocio")
+                                        .queryParam("negocio", negocio.trim { it <= ' ' })
+                                        .queryParam("page", pageable.pageNumber)
+                                        .queryParam("size", pageable.pageSize)
+                                        .queryParam("sort", pageable.sort)
+                                        .lazyAreas()
+                                        .build().toUri())
 
-        val total = LongSupplier { count().block()!! }
-
-        return PageableExecutionUtils.getPage(res.block()!!.toMutableList(), pageable, total)
+        return findPage("negocio:${negocio.trim { it <= ' ' }}", pageable, elements, countByNegocio(negocio))
     }
 
     fun findAnyMatchingNegocio(filter: Optional<CompaniaFilter>, pageable: Pageable): Page<CompaniaDTO> {
@@ -210,11 +193,68 @@ class CompaniaService: ClientWebController, CustomWebClientService<CompaniaDTO>
                 return count()
     }
 
+    /**
+     * Reads one page of the areas of a Company when the Companies are read with lazy areas. The
+     * pages are kept in the session EntityCache, so expanding again the same Company is free.
+     */
+    fun findAreas(compania: CompaniaDTO, pageable: Pageable): List<AreaDTO> {
+        val entityCache = EntityCache.current(serviceConfig)
+        val key = EntityCache.Key(AreaDTO::class.java, "compania",
+                                  "${compania.id}:${pageable.pageNumber}:${pageable.pageSize}")
+        val cached = entityCache?.get(key)
+
+        if (cached != null)
+            return cached as List<AreaDTO>
+
+        val areas = controller().webclient.get()
+                                .uri(controller().uri().path("/${controller().baseUrlSingle}/areas")
+                                    .queryParam("id", compania.id)
+                                    .queryParam("page", pageable.pageNumber)
+                                    .queryParam("size", pageable.pageSize)
+                                    .build().toUri())
+                                .attributes(clientRegistrationId(controller().provider()))
+                                .attributes(operation("CompaniaService.findAreas"))
+                                .retrieve()
+                                .bodyToMono(Array<AreaDTO>::class.java)
+                                .switchIfEmpty(Mono.just(arrayOf<AreaDTO>()))
+                                .doOnSubscribe { controller().remoteRequests("findAreas").increment() }
+                                .map { it.toList() }
+                                .block()!!
+
+        entityCache?.put(key, areas)
+
+        return areas
+    }
+
+    /**
+     * All the areas of a Company, read from the iam-service just if they did not come with the Company.
+     */
+    fun areasOf(compania: CompaniaDTO): Collection<AreaDTO> =
+        if (compania.areas.isNotEmpty() || compania.numAreas == 0)
+            compania.areas
+        else
+            findAreas(compania, PageRequest.of(0, compania.numAreas))
+
+    /**
+     * Batch look-ups for the editors that select many Companies. They are read from the
+     * application catalog, so just the Companies that are not there are requested.
+     */
+    fun findByNames(nombres: Collection<String>): List<CompaniaDTO> = catalog.findByNames(nombres) { findByName(it) }
+
+    fun findByIds(ids: Collection<Long>): List<CompaniaDTO> = catalog.findByIds(ids) { findById(it) }
+
+    /**
+     * The Companies are not saved by the iam-ui, so the catalog is invalidated for the Companies of
+     * the employees that are saved (see Operation), and by its ttl for the ones saved elsewhere.
+     */
+    fun invalidateCatalog(companias: Collection<CompaniaDTO>) = companias.forEach { catalog.invalidate(it) }
+
     fun graphCompaniasByAdministrador(nombre: String) = controller().webclient.get()
         .uri(controller().uri().path("/${controller().baseUrlSingle}/admin/grafo/companias")
             .queryParam("nombreAdministrador", nombre)
             .build().toUri())
         .attributes(clientRegistrationId(controller().provider()))
+        .attributes(operation("CompaniaService.graphCompaniasByAdministrador"))
         .retrieve()
         .bodyToMono(String::class.java)
         .cast(String::class.java)
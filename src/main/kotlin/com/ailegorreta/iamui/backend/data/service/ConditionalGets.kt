@@ -0,0 +1,104 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  ConditionalGets.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.iamui.backend.data.service
+
+import com.github.benmanes.caffeine.cache.Cache
+import com.github.benmanes.caffeine.cache.Caffeine
+import io.micrometer.core.instrument.Metrics
+import io.micrometer.core.instrument.binder.cache.CaffeineStatsCounter
+import org.springframework.http.HttpStatus
+import org.springframework.web.reactive.function.client.ClientResponse
+import org.springframework.web.reactive.function.client.WebClient
+import reactor.core.publisher.Mono
+import java.net.URI
+
+/**
+ * Conditional GETs (RFC 9110) of the catalogs that rarely change (e.g., Roles, Facultades, Perfiles
+ * and Companies pages).
+ *
+ * The validators of every response (ETag and Last-Modified) are kept with its decoded value, by URI
+ * and authorization scope (see SingleFlight). The next GET of the same URI sends If-None-Match and
+ * If-Modified-Since and, when the iam-service answers 304 Not Modified, the kept value is returned
+ * without downloading nor decoding the page again. Responses without validators are not kept.
+ *
+ * The values are returned through copy, since they are shared by all sessions. The
+ * 'iam.ui.remote.conditional' counter records the modified and not_modified responses.
+ *
+ * @author rlh
+ * @project : iam-ui
+ * @date September 2023
+ */
+class ConditionalGets(private val service: String, maximumSize: Long) {
+
+    data class Key(val uri: URI, val scope: Set<String>)
+
+    private class Validated(val eTag: String?, val lastModified: Long, val value: Any?)
+
+    private val responses: Cache<Key, Validated> = Caffeine.newBuilder()
+                                                           .maximumSize(maximumSize)
+                                                           .recordStats { CaffeineStatsCounter(Metrics.globalRegistry, CACHE_NAME) }
+                                                           .build()
+
+    /**
+     * The request is created for every subscription, so its validators are always the current ones.
+     */
+    fun <R> get(operation: String, uri: URI, request: () -> WebClient.RequestHeadersSpec<*>,
+                decode: (ClientResponse) -> Mono<R>, copy: (R) -> R = { it }): Mono<R> = Mono.defer {
+        val key = Key(uri, SingleFlight.scope())
+        val validated = responses.getIfPresent(key)
+
+        request().headers { headers ->
+                     validated?.eTag?.let { headers.setIfNoneMatch(it) }
+                     if (validated != null && validated.lastModified > 0) headers.ifModifiedSince = validated.lastModified
+                 }
+                 .exchangeToMono { response ->
+                     when {
+                         response.statusCode() == HttpStatus.NOT_MODIFIED && validated != null -> {
+                             count(operation, "not_modified")
+                             response.releaseBody().then(Mono.fromSupplier { copy(validated.value as R) })
+                         }
+                         response.statusCode().is2xxSuccessful -> {
+                             val eTag = response.headers().asHttpHeaders().eTag
+                             val lastModified = response.headers().asHttpHeaders().lastModified
+
+                             count(operation, "modified")
+                             decode(response).doOnNext {
+                                 if (eTag != null || lastModified > 0)
+                                     responses.put(key, Validated(eTag, lastModified, copy(it)))
+                                 else
+                                     responses.invalidate(key)
+                             }
+                         }
+                         else -> response.createException().flatMap { Mono.error<R>(it) }
+                     }
+                 }
+    }
+
+    private fun count(operation: String, outcome: String) =
+        Metrics.counter("iam.ui.remote.conditional", "service", service, "operation", operation,
+                        "outcome", outcome).increment()
+
+    companion object {
+        const val CACHE_NAME = "iam.conditional"
+    }
+}
@@ -22,19 +22,21 @@
  */
 package com.ailegorreta.iamui.backend.data.service
 
+import com.ailegorreta.iamui.security.config.RemoteCallMetricsFilter.operation
+import com.fasterxml.jackson.core.JsonToken
 import com.fasterxml.jackson.databind.ObjectMapper
 import com.ailegorreta.commons.utils.HasLogger
 import com.ailegorreta.iamui.ui.exceptions.RestClientException
 import org.springframework.cloud.client.circuitbreaker.ReactiveCircuitBreaker
 import org.springframework.data.domain.Page
+import org.springframework.data.domain.PageImpl
 import org.springframework.data.domain.Pageable
-import org.springframework.data.support.PageableExecutionUtils
 import org.springframework.security.oauth2.client.web.reactive.function.client.ServletOAuth2AuthorizedClientExchangeFilterFunction.clientRegistrationId
 import reactor.core.publisher.Mono
 import java.io.IOException
+import java.net.URI
 import java.time.Duration
 import java.util.*
-import java.util.function.LongSupplier
 
 /**
  * CustomWebClientService interface. This is to avoid duplicate code between services
@@ -59,19 +61,44 @@ interface CustomWebClientService<T> : HasLogger {
         }
     }
 
+    /**
+     * Decodes a JSON array in one pass: the elements are read directly from the parser with
+     * the reader of the class, without building a JsonNode tree and parsing every element again.
+     */
+    @Throws(RestClientException::class)
+    fun toList(jsonValue: String, clazz: Class<T>): List<T> {
+        val elements = ArrayList<T>()
+
+        try {
+            controller().mapper.factory.createParser(jsonValue).use { parser ->
+                val reader = controller().reader(clazz)
+
+                if (parser.nextToken() != JsonToken.START_ARRAY)
+                    throw RestClientException(RestClientException.STATUS_JSON_CONVERSION, "Se espera una array")
+                while (parser.nextToken() != JsonToken.END_ARRAY)
+                    elements.add(reader.readValue(parser))
+            }
+        } catch (e: IOException) {
+            throw RestClientException(RestClientException.STATUS_JSON_CONVERSION, e)
+        }
+
+        return elements
+    }
+
     fun toList(res: String): List<T>
 
     fun toObject(res: String): T
 
     fun countByNameActive(filter: String, activo: Boolean): Mono<Long> {
-        return controller().webclient.get()
+        return cachedCount("nombre/activo:${filter.trim { it <= ' ' }}:$activo", controller().webclient.get()
                             .uri(controller().uri().path("/${controller().baseUrlMany}/nombre/activo/count")
                                                    .queryParam("nombre",filter.trim { it <= ' ' })
                                                    .queryParam("activo", booleanStr(activo))
                                                    .build().toUri())
                             .attributes(clientRegistrationId(controller().provider()))
+                            .attributes(operation("${controller().javaClass.simpleName}.countByNameActive"))
                             .retrieve()
-                            .bodyToMono(Long::class.java)
+                            .bodyToMono(Long::class.java))
     }
 
     /**
@@ -81,87 +108,79 @@ interface CustomWebClientService<T> : HasLogger {
      */
     fun countByNameActive(circuitBreaker: ReactiveCircuitBreaker,
                           filter: String, activo: Boolean): Mono<Long> {
-        return circuitBreaker.run(controller().webclient.get()
+        val countKey = "nombre/activo:${filter.trim { it <= ' ' }}:$activo"
+        val stale = controller().staleFallback<Long>("count:$countKey")
+
+        return circuitBreaker.run(cachedCount(countKey, controller().webclient.get()
                                     .uri(controller().uri().path("/${controller().baseUrlMany}/nombre/activo/count")
                                         .queryParam("nombre",filter.trim { it <= ' ' })
                                         .queryParam("activo", booleanStr(activo))
                                         .build().toUri())
                                     .attributes(clientRegistrationId(controller().provider()))
+                                    .attributes(operation("${controller().javaClass.simpleName}.countByNameActive"))
                                     .retrieve()
-                                    .bodyToMono(Long::class.java)
+                                    .bodyToMono(Long::class.java))
         ) { throwable ->
             logger.error("Alguno de los dos micro.servicios del IAM (o ambos se encuentra NO disponibles) se regresa un cero", throwable)
-            Mono.just(0)        // return cero that it is an empty list
+            ClientWebController.fallback(Mono.just(stale(throwable) ?: 0L))        // return cero that it is an empty list
         }
     }
 
-    fun findByNameActive(filter: String, activo: Boolean, pageable: Pageable): Page<T> {
-        val res =  controller().webclient.get()
-                            .uri(controller().uri().path("/${controller().baseUrlMany}/nombre/activo")
-                                .queryParam("nombre", filter.trim { it <= ' ' })
-                                .queryParam("activo", booleanStr(activo))
-                                .queryParam("page", pageable.pageNumber)
-                                .queryParam("size", pageable.pageSize)
-                                .queryParam("sort", pageable.sort)
-                                .build().toUri())
-                            .attributes(clientRegistrationId(controller().provider()))
-                            .retrieve()
-                            .bodyToMono(controller().clazzes())
-                            .timeout(Duration.ofMillis(10_000))
-                            .switchIfEmpty(controller().switchIfEmpty() as Mono<out Nothing>)
-                            .doOnNext { s -> logger.debug("findByNameActive: {}", (s as Array<T>).contentToString()) }
-                            .map{ elements -> listOf(elements) }
-                            as  Mono<List<T>>
-
-        val total = LongSupplier { countByNameActive(filter, activo).block()!! }
-        val elements = res.block()!!.first() as Array<T>
+    fun findByNameActivePage(filter: String, activo: Boolean, pageable: Pageable): Mono<Page<T>> {
+        val elements = findElements("findByNameActive",
+                                    controller().uri().path("/${controller().baseUrlMany}/nombre/activo")
+                                        .queryParam("nombre", filter.trim { it <= ' ' })
+                                        .queryParam("activo", booleanStr(activo))
+                                        .queryParam("page", pageable.pageNumber)
+                                        .queryParam("size", pageable.pageSize)
+                                        .queryParam("sort", pageable.sort)
+                                        .build().toUri())
 
-        return PageableExecutionUtils.getPage(elements.toMutableList(), pageable, total)
+        return page("nombre/activo:${filter.trim { it <= ' ' }}:$activo", pageable,
+                    elements, countByNameActive(filter, activo))
     }
 
+    fun findByNameActive(filter: String, activo: Boolean, pageable: Pageable): Page<T> =
+        findByNameActivePage(filter, activo, pageable).block()!!
+
     /**
      * Demo to see how can we implement circuit breaker.
      * For more information, see:
      * https://spring.io/guides/gs/cloud-circuit-breaker/
      */
-    fun findByNameActive(circuitBreaker: ReactiveCircuitBreaker,
-                         filter: String, activo: Boolean, pageable: Pageable): Page<T> {
-        val res = circuitBreaker.run(
-            controller().webclient.get()
-                                .uri(controller().uri().path("/${controller().baseUrlMany}/nombre/activo")
-                                    .queryParam("nombre", filter.trim { it <= ' ' })
-                                    .queryParam("activo", booleanStr(activo))
-                                    .queryParam("page", pageable.pageNumber)
-                                    .queryParam("size", pageable.pageSize)
-                                    .queryParam("sort", pageable.sort)
-                                    .build().toUri())
-                                .attributes(clientRegistrationId(controller().provider()))
-                                .retrieve()
-                                .bodyToMono(controller().clazzes())
-                                .timeout(Duration.ofMillis(10_000))
-                                .switchIfEmpty(controller().switchIfEmpty() as Mono<out Nothing>)
-                                .doOnNext { s -> logger.debug("findByNameActive: {}", (s as Array<T>).contentToString()) }
-                                .map{ elements -> listOf(elements) }
-                                    as  Mono<List<T>>
+    fun findByNameActivePage(circuitBreaker: ReactiveCircuitBreaker,
+                             filter: String, activo: Boolean, pageable: Pageable): Mono<Page<T>> {
+        val uri = controller().uri().path("/${controller().baseUrlMany}/nombre/activo")
+                            .queryParam("nombre", filter.trim { it <= ' ' })
+                            .queryParam("activo", booleanStr(activo))
+                            .queryParam("page", pageable.pageNumber)
+                            .queryParam("size", pageable.pageSize)
+                            .queryParam("sort", pageable.sort)
+                            .build().toUri()
+        val stale = staleElements(uri)
+        val elements = circuitBreaker.run(findElements("findByNameActive", uri)
         ) { throwable ->
             logger.error("Alguno de los servicios el IAM (o ambos se encuentra NO disponible NO se lista ninguna facultad", throwable)
-            Mono.just(ArrayList<T>(0))
+            ClientWebController.fallback(Mono.just(stale(throwable) ?: ArrayList<T>(0)))
         }
 
-        val total = LongSupplier { countByNameActive(filter, activo).block()!! }
-        val elements = if (res.block()!!.isEmpty()) res.block()!! else (res.block()!!.first() as Array<T>).toMutableList()
-
-        return PageableExecutionUtils.getPage(elements, pageable, total)
+        return page("nombre/activo:${filter.trim { it <= ' ' }}:$activo", pageable,
+                    elements, countByNameActive(circuitBreaker, filter, activo))
     }
 
+    fun findByNameActive(circuitBreaker: ReactiveCircuitBreaker,
+                         filter: String, activo: Boolean, pageable: Pageable): Page<T> =
+        findByNameActivePage(circuitBreaker, filter, activo, pageable).block()!!
+
     fun countByName(filter: String): Mono<Long> {
-        return controller().webclient.get()
+        return cachedCount("nombre:${filter.trim { it <= ' ' }}", controller().webclient.get()
                             .uri(controller().uri().path("/${controller().baseUrlMany}/nombre/count")
                                 .queryParam("nombre",filter.trim { it <= ' ' })
                                 .build().toUri())
                             .attributes(clientRegistrationId(controller().provider()))
+                            .attributes(operation("${controller().javaClass.simpleName}.countByName"))
                             .retrieve()
-                            .bodyToMono(Long::class.java)
+                            .bodyToMono(Long::class.java))
     }
 
     /**
@@ -171,83 +190,74 @@ interface CustomWebClientService<T> : HasLogger {
      */
     fun countByName(circuitBreaker: ReactiveCircuitBreaker,
                     filter: String): Mono<Long> {
-        return circuitBreaker.run( controller().webclient.get()
+        val countKey = "nombre:${filter.trim { it <= ' ' }}"
+        val stale = controller().staleFallback<Long>("count:$countKey")
+
+        return circuitBreaker.run( cachedCount(countKey, controller().webclient.get()
                                     .uri(controller().uri().path("/${controller().baseUrlMany}/nombre/count")
                                         .queryParam("nombre",filter.trim { it <= ' ' })
                                         .build().toUri())
                                     .attributes(clientRegistrationId(controller().provider()))
+                                    .attributes(operation("${controller().javaClass.simpleName}.countByName"))
                                     .retrieve()
-                                    .bodyToMono(Long::class.java)
+                                    .bodyToMono(Long::class.java))
         ) { throwable ->
             logger.error("Alguno de los dos micro.servicios del IAM (o ambos se encuentra NO disponibles) se regresa un cero", throwable)
-            Mono.just(0)        // return cero that it is an empty list
+            ClientWebController.fallback(Mono.just(stale(throwable) ?: 0L))        // return cero that it is an empty list
         }
     }
 
-    fun findByName(filter: String, pageable: Pageable): Page<T> {
-        val res =  controller().webclient.get()
-                                .uri(controller().uri().path("/${controller().baseUrlMany}/nombre")
-                                    .queryParam("nombre", filter.trim { it <= ' ' })
-                                    .queryParam("page", pageable.pageNumber)
-                                    .queryParam("size", pageable.pageSize)
-                                    .queryParam("sort", pageable.sort)
-                                    .build().toUri())
-                                .attributes(clientRegistrationId(controller().provider()))
-                                .retrieve()
-                                .bodyToMono(controller().clazzes())
-                                .timeout(Duration.ofMillis(10_000))
-                                .switchIfEmpty(controller().switchIfEmpty() as Mono<out Nothing>)
-                                .doOnNext { s -> logger.debug("findByName: {}", (s as Array<T>).contentToString()) }
-                                .map{ elements -> listOf(elements) }
-                                as  Mono<List<T>>
-
-        val total = LongSupplier { countByName(filter).block()!! }
-        val elements = res.block()!!.first() as Array<T>
-
-        return PageableExecutionUtils.getPage(elements.toMutableList(), pageable, total)
+    fun findByNamePage(filter: String, pageable: Pageable): Mono<Page<T>> {
+        val elements = findElements("findByName",
+                                    controller().uri().path("/${controller().baseUrlMany}/nombre")
+                                        .queryParam("nombre", filter.trim { it <= ' ' })
+                                        .queryParam("page", pageable.pageNumber)
+                                        .queryParam("size", pageable.pageSize)
+                                        .queryParam("sort", pageable.sort)
+                                        .build().toUri())
+
+        return page("nombre:${filter.trim { it <= ' ' }}", pageable, elements, countByName(filter))
     }
 
+    fun findByName(filter: String, pageable: Pageable): Page<T> =
+        findByNamePage(filter, pageable).block()!!
+
     /**
      * Demo to see how can we implement circuit breaker.
      * For more information, see:
      * https://spring.io/guides/gs/cloud-circuit-breaker/
      */
-    fun findByName(circuitBreaker: ReactiveCircuitBreaker,
-                   filter: String, pageable: Pageable): Page<T> {
-        val res = circuitBreaker.run(
-                            controller().webclient.get()
-                            .uri(controller().uri().path("/${controller().baseUrlMany}/nombre")
-                                .queryParam("nombre", filter.trim { it <= ' ' })
-                                .queryParam("page", pageable.pageNumber)
-                                .queryParam("size", pageable.pageSize)
-                                .queryParam("sort", pageable.sort)
-                                .build().toUri())
-                            .attributes(clientRegistrationId(controller().provider()))
-                            .retrieve()
-                            .bodyToMono(controller().clazzes())
-                            .timeout(Duration.ofMillis(10_000))
-                            .switchIfEmpty(controller().switchIfEmpty() as Mono<out Nothing>)
-                            .doOnNext { s -> logger.debug("findByName: {}", (s as Array<T>).contentToString()) }
-                            .map{ elements -> listOf(elements) }
-                                as  Mono<List<T>>
+    fun findByNamePage(circuitBreaker: ReactiveCircuitBreaker,
+                       filter: String, pageable: Pageable): Mono<Page<T>> {
+        val uri = controller().uri().path("/${controller().baseUrlMany}/nombre")
+                            .queryParam("nombre", filter.trim { it <= ' ' })
+                            .queryParam("page", pageable.pageNumber)
+                            .queryParam("size", pageable.pageSize)
+                            .queryParam("sort", pageable.sort)
+                            .build().toUri()
+        val stale = staleElements(uri)
+        val elements = circuitBreaker.run(findElements("findByName", uri)
         ) { throwable ->
             logger.error("Alguno de los servicios el IAM (o ambos se encuentra NO disponible NO se lista ninguna facultad", throwable)
-            Mono.just(ArrayList<T>(0))
+            ClientWebController.fallback(Mono.just(stale(throwable) ?: ArrayList<T>(0)))
         }
-        val total = LongSupplier { countByName(filter).block()!! }
-        val elements = if (res.block()!!.isEmpty()) res.block()!! else (res.block()!!.first() as Array<T>).toMutableList()
 
-        return PageableExecutionUtils.getPage(elements, pageable, total)
+        return page("nombre:${filter.trim { it <= ' ' }}", pageable, elements, countByName(circuitBreaker, filter))
     }
 
+    fun findByName(circuitBreaker: ReactiveCircuitBreaker,
+                   filter: String, pageable: Pageable): Page<T> =
+        findByNamePage(circuitBreaker, filter, pageable).block()!!
+
     fun countActive(activo: Boolean): Mono<Long> {
-        return controller().webclient.get()
+        return cachedCount("activo:$activo", controller().webclient.get()
             .uri(controller().uri().path("/${controller().baseUrlMany}/activo/count")
                 .queryParam("activo", booleanStr(activo))
                 .build().toUri())
             .attributes(clientRegistrationId(controller().provider()))
+            .attributes(operation("${controller().javaClass.simpleName}.countActive"))
             .retrieve()
-            .bodyToMono(Long::class.java)
+            .bodyToMono(Long::class.java))
     }
 
     /**
@@ -256,76 +266,65 @@ interface CustomWebClientService<T> : HasLogger {
      * https://spring.io/guides/gs/cloud-circuit-breaker/
      */
     fun countActive(circuitBreaker: ReactiveCircuitBreaker, activo: Boolean): Mono<Long> {
-        return circuitBreaker.run( controller().webclient.get()
+        val stale = controller().staleFallback<Long>("count:activo:$activo")
+
+        return circuitBreaker.run( cachedCount("activo:$activo", controller().webclient.get()
                                     .uri(controller().uri().path("/${controller().baseUrlMany}/activo/count")
                                         .queryParam("activo", booleanStr(activo))
                                         .build().toUri())
                                     .attributes(clientRegistrationId(controller().provider()))
+                                    .attributes(operation("${controller().javaClass.simpleName}.countActive"))
                                     .retrieve()
-                                    .bodyToMono(Long::class.java)
+                                    .bodyToMono(Long::class.java))
         ) { throwable ->
             logger.error("Alguno de los dos micro.servicios del IAM (o ambos se encuentra NO disponibles) se regresa un cero", throwable)
-            Mono.just(0)        // return cero that it is an empty list
+            ClientWebController.fallback(Mono.just(stale(throwable) ?: 0L))        // return cero that it is an empty list
         }
     }
 
-    fun findActive(activo: Boolean, pageable: Pageable): Page<T> {
-        val res =  controller().webclient.get()
-                                .uri(controller().uri().path("/${controller().baseUrlMany}/activo")
-                                    .queryParam("activo", booleanStr(activo))
-                                    .queryParam("page", pageable.pageNumber)
-                                    .queryParam("size", pageable.pageSize)
-                                    .queryParam("sort", pageable.sort)
-                                    .build().toUri())
-                                .attributes(clientRegistrationId(controller().provider()))
-                                .retrieve()
-                                .bodyToMono(controller().clazzes())
-                                .timeout(Duration.ofMillis(10_000))
-                                .switchIfEmpty(controller().switchIfEmpty() as Mono<out Nothing>)
-                                .doOnNext { s -> logger.debug("findActive: {}", (s as Array<T>).contentToString()) }
-                                .map{ elements -> listOf(elements) }
-                                    as  Mono<List<T>>
-
-        val total = LongSupplier { countActive(activo).block()!! }
-        val elements = res.block()!!.first() as Array<T>
-
-        return PageableExecutionUtils.getPage(elements.toMutableList(), pageable, total)
-    }
-
-    fun findActive(circuitBreaker: ReactiveCircuitBreaker, activo: Boolean, pageable: Pageable): Page<T> {
-        val res = circuitBreaker.run( controller().webclient.get()
-                                    .uri(controller().uri().path("/${controller().baseUrlMany}/activo")
+    fun findActivePage(activo: Boolean, pageable: Pageable): Mono<Page<T>> {
+        val elements = findElements("findActive",
+                                    controller().uri().path("/${controller().baseUrlMany}/activo")
                                         .queryParam("activo", booleanStr(activo))
                                         .queryParam("page", pageable.pageNumber)
                                         .queryParam("size", pageable.pageSize)
                                         .queryParam("sort", pageable.sort)
-                                        .build().toUri())
-                                    .attributes(clientRegistrationId(controller().provider()))
-                                    .retrieve()
-                                    .bodyToMono(controller().clazzes())
-                                    .timeout(Duration.ofMillis(10_000))
-                                    .switchIfEmpty(controller().switchIfEmpty() as Mono<out Nothing>)
-                                    .doOnNext { s -> logger.debug("findActive: {}", (s as Array<T>).contentToString()) }
-                                    .map{ elements -> listOf(elements) }
-                                        as  Mono<List<T>>
+                                        .build().toUri(), true)
+
+        return page("activo:$activo", pageable, elements, countActive(activo))
+    }
+
+    fun findActive(activo: Boolean, pageable: Pageable): Page<T> =
+        findActivePage(activo, pageable).block()!!
+
+    fun findActivePage(circuitBreaker: ReactiveCircuitBreaker, activo: Boolean, pageable: Pageable): Mono<Page<T>> {
+        val uri = controller().uri().path("/${controller().baseUrlMany}/activo")
+                            .queryParam("activo", booleanStr(activo))
+                            .queryParam("page", pageable.pageNumber)
+                            .queryParam("size", pageable.pageSize)
+                            .queryParam("sort", pageable.sort)
+                            .build().toUri()
+        val stale = staleElements(uri)
+        val elements = circuitBreaker.run(findElements("findActive", uri, true)
         ) { throwable ->
             logger.error("Alguno de los servicios el IAM (o ambos se encuentra NO disponible NO se lista ninguna facultad", throwable)
-            Mono.just(ArrayList<T>(0))
+            ClientWebController.fallback(Mono.just(stale(throwable) ?: ArrayList<T>(0)))
         }
 
-        val total = LongSupplier { countActive(activo).block()!! }
-        val elements = if (res.block()!!.isEmpty()) res.block()!! else (res.block()!!.first() as Array<T>).toMutableList()
-
-        return PageableExecutionUtils.getPage(elements, pageable, total)
+        return page("activo:$activo", pageable, elements, countActive(circuitBreaker, activo))
     }
 
+    fun findActive(circuitBreaker: ReactiveCircuitBreaker, activo: Boolean, pageable: Pageable): Page<T> =
+        findActivePage(circuitBreaker, activo, pageable).block()!!
+
     fun count(): Mono<Long> {
-        return controller().webclient.get()
+        return cachedCount("all", controller().webclient.get()
                             .uri(controller().uri().path("/${controller().baseUrlMany}/count")
                                 .build().toUri())
                             .attributes(clientRegistrationId(controller().provider()))
+                            .attributes(operation("${controller().javaClass.simpleName}.count"))
                             .retrieve()
-                            .bodyToMono(Long::class.java)
+                            .bodyToMono(Long::class.java))
     }
 
     /**
@@ -334,41 +333,36 @@ interface CustomWebClientService<T> : HasLogger {
      * https://spring.io/guides/gs/cloud-circuit-breaker/
      */
     fun count(circuitBreaker: ReactiveCircuitBreaker): Mono<Long> {
+        val stale = controller().staleFallback<Long>("count:all")
+
         return circuitBreaker.run(
-            controller().webclient.get()
+            cachedCount("all", controller().webclient.get()
                 .uri(controller().uri().path("/${controller().baseUrlMany}/count")
                     .build().toUri())
                 .attributes(clientRegistrationId(controller().provider()))
+                .attributes(operation("${controller().javaClass.simpleName}.count"))
                 .retrieve()
-                .bodyToMono(Long::class.java)
+                .bodyToMono(Long::class.java))
         ) { throwable ->
             logger.error("Alguno de los dos micro.servicios del IAM (o ambos se encuentra NO disponibles) se regresa un cero", throwable)
-            Mono.just(0)        // return cero that it is an empty list
+            ClientWebController.fallback(Mono.just(stale(throwable) ?: 0L))        // return cero that it is an empty list
         }
     }
 
-    fun findAll(pageable: Pageable): Page<T> {
-        val res =  controller().webclient.get()
-                                    .uri(controller().uri().path("/${controller().baseUrlMany}")
+    fun findAllPage(pageable: Pageable): Mono<Page<T>> {
+        val elements = findElements("findAll",
+                                    controller().uri().path("/${controller().baseUrlMany}")
                                         .queryParam("page", pageable.pageNumber)
                                         .queryParam("size", pageable.pageSize)
                                         .queryParam("sort", pageable.sort)
-                                        .build().toUri())
-                                    .attributes(clientRegistrationId(controller().provider()))
-                                    .retrieve()
-                                    .bodyToMono(controller().clazzes())
-                                    .timeout(Duration.ofMillis(10_000))
-                                    .switchIfEmpty(controller().switchIfEmpty() as Mono<out Nothing>)
-                                    .doOnNext { s -> logger.debug("find all: {}", (s as Array<T>).contentToString()) }
-                                    .map{ elements -> listOf(elements) }
-                                    as  Mono<List<T>>
-
-        val total = LongSupplier { count().block()!! }
-        val elements = res.block()!!.first() as Array<T>
+                                        .build().toUri(), true)
 
-        return PageableExecutionUtils.getPage(elements.toMutableList(), pageable, total)
+        return page("all", pageable, elements, count())
     }
 
+    fun findAll(pageable: Pageable): Page<T> =
+        findAllPage(pageable).block()!!
+
     /**
      * Demo to see how can we implement circuit breaker.
      * Of course these three methods must be in the super class
@@ -376,43 +370,36 @@ interface CustomWebClientService<T> : HasLogger {
      * For more information, see:
      * https://spring.io/guides/gs/cloud-circuit-breaker/
      */
-    fun findAll(circuitBreaker: ReactiveCircuitBreaker, pageable: Pageable): Page<T> {
-        val res = circuitBreaker.run(
-            controller().webclient.get()
-                .uri(controller().uri().path("/${controller().baseUrlMany}")
-                    .queryParam("page", pageable.pageNumber)
-                    .queryParam("size", pageable.pageSize)
-                    .queryParam("sort", pageable.sort)
-                    .build().toUri())
-                .attributes(clientRegistrationId(controller().provider()))
-                .retrieve()
-                .bodyToMono(controller().clazzes())
-                .timeout(Duration.ofMillis(10_000))
-                .switchIfEmpty(controller().switchIfEmpty() as Mono<out Nothing>)
-                .doOnNext { s -> logger.debug("find all: {}", (s as Array<T>).contentToString()) }
-                .map{ elements -> listOf(elements) }
-                    as  Mono<List<T>>
+    fun findAllPage(circuitBreaker: ReactiveCircuitBreaker, pageable: Pageable): Mono<Page<T>> {
+        val uri = controller().uri().path("/${controller().baseUrlMany}")
+                            .queryParam("page", pageable.pageNumber)
+                            .queryParam("size", pageable.pageSize)
+                            .queryParam("sort", pageable.sort)
+                            .build().toUri()
+        val stale = staleElements(uri)
+        val elements = circuitBreaker.run(findElements("findAll", uri, true)
         ) { throwable ->
             logger.error("Alguno de los servicios el IAM (o ambos se encuentra NO disponible NO se lista ninguna facultad", throwable)
-            Mono.just(ArrayList<T>(0))
+            ClientWebController.fallback(Mono.just(stale(throwable) ?: ArrayList<T>(0)))
         }
 
-        val total = LongSupplier { count().block()!! }
-        val elements = if (res.block()!!.isEmpty()) res.block()!! else (res.block()!!.first() as Array<T>).toMutableList()
-
-        return PageableExecutionUtils.getPage(elements, pageable, total)
+        return page("all", pageable, elements, count(circuitBreaker))
     }
 
+    fun findAll(circuitBreaker: ReactiveCircuitBreaker, pageable: Pageable): Page<T> =
+        findAllPage(circuitBreaker, pageable).block()!!
+
     fun findById(id: Long): Mono<T> {
-        return controller().webclient.get()
+        return cached("id", id, controller().staleWhileRevalidate("id:$id", controller().webclient.get()
                 .uri(controller().uri().path("/${controller().baseUrlSingle}/by/id")
                     .queryParam("id", id)
                     .build().toUri())
                 .attributes(clientRegistrationId(controller().provider()))
+                .attributes(operation("${controller().javaClass.simpleName}.findById"))
                 .retrieve()
                 .bodyToMono(controller().clazz())
                 .doOnNext { s -> logger.debug("findById: {}", s.toString()) }
-                as Mono<T>
+                as Mono<T>) { copy(it as Any) })
     }
 
     /**
@@ -423,31 +410,35 @@ interface CustomWebClientService<T> : HasLogger {
      * https://spring.io/guides/gs/cloud-circuit-breaker/
      */
     fun findById(circuitBreaker: ReactiveCircuitBreaker, id: Long): Mono<T> {
-        return circuitBreaker.run( controller().webclient.get()
+        val stale = controller().staleFallback<T>("id:$id") { copy(it as Any) }
+
+        return cached("id", id, circuitBreaker.run( controller().staleWhileRevalidate("id:$id", controller().webclient.get()
                                         .uri(controller().uri().path("/${controller().baseUrlSingle}/by/id")
                                             .queryParam("id", id)
                                             .build().toUri())
                                         .attributes(clientRegistrationId(controller().provider()))
+                                        .attributes(operation("${controller().javaClass.simpleName}.findById"))
                                         .retrieve()
                                         .bodyToMono(controller().clazz())
                                         .doOnNext { s -> logger.debug("findById: {}", s.toString()) }
-                                            as Mono<T>
+                                            as Mono<T>) { copy(it as Any) }
         ) { throwable ->
             logger.error("Alguno de los servicios el IAM (o ambos se encuentra NO disponible NO se lista ninguna facultad", throwable)
-            Mono.empty()
-        }
+            ClientWebController.fallback(Mono.justOrEmpty(stale(throwable)))
+        })
     }
 
     fun findByName(nombre: String): Mono<T> {
-        return controller().webclient.get()
+        return cached("nombre", nombre, controller().staleWhileRevalidate("nombre:$nombre", controller().webclient.get()
             .uri(controller().uri().path("/${controller().baseUrlSingle}/by/nombre")
                 .queryParam("nombre", nombre)
                 .build().toUri())
             .attributes(clientRegistrationId(controller().provider()))
+            .attributes(operation("${controller().javaClass.simpleName}.findByName"))
             .retrieve()
             .bodyToMono(controller().clazz())
             .doOnNext { s -> logger.debug("findByName: {}", s.toString()) }
-            as Mono<T>
+            as Mono<T>) { copy(it as Any) })
     }
 
     /**
@@ -458,19 +449,125 @@ interface CustomWebClientService<T> : HasLogger {
      * https://spring.io/guides/gs/cloud-circuit-breaker/
      */
     fun findByName(circuitBreaker: ReactiveCircuitBreaker, nombre: String): Mono<T> {
-        return circuitBreaker.run( controller().webclient.get()
+        val stale = controller().staleFallback<T>("nombre:$nombre") { copy(it as Any) }
+
+        return cached("nombre", nombre, circuitBreaker.run( controller().staleWhileRevalidate("nombre:$nombre", controller().webclient.get()
                                         .uri(controller().uri().path("/${controller().baseUrlSingle}/by/nombre")
                                             .queryParam("nombre", nombre)
                                             .build().toUri())
                                         .attributes(clientRegistrationId(controller().provider()))
+                                        .attributes(operation("${controller().javaClass.simpleName}.findByName"))
                                         .retrieve()
                                         .bodyToMono(controller().clazz())
                                         .doOnNext { s -> logger.debug("findByName: {}", s.toString()) }
-                                            as Mono<T>
+                                            as Mono<T>) { copy(it as Any) }
         ) { throwable ->
             logger.error("Alguno de los servicios el IAM (o ambos se encuentra NO disponible NO se lista ninguna facultad", throwable)
-            Mono.empty()
+            ClientWebController.fallback(Mono.justOrEmpty(stale(throwable)))
+        })
+    }
+
+    /**
+     * Read-through of the session EntityCache (when the service has cachedEntities). The cache keeps
+     * its own copy and returns a copy too, because the views modify the entity they read (e.g., with
+     * a Binder) and must not change the cached one.
+     */
+    fun cached(by: String, value: Any, remote: Mono<T>): Mono<T> {
+        val entityCache = controller().entityCache() ?: return remote
+        val key = EntityCache.Key(controller().clazz(), by, value)
+        val entity = entityCache.get(key)
+
+        return if (entity != null)
+                    Mono.just(copy(entity))
+               else
+                    remote.doOnNext { entityCache.put(key, copy(it as Any)) }
+    }
+
+    fun copy(entity: Any): T = controller().mapper.convertValue(entity, controller().clazz()) as T
+
+    /**
+     * Reads one page of elements from the iam-service. The Mono is cold, so nothing is requested
+     * until the page is subscribed (see findPage) and every subscription is one remote call, counted
+     * by the 'iam.ui.remote.requests' metric tagged with the service and the method. Identical
+     * pages requested at the same time by other sessions share the call (see SingleFlight).
+     *
+     * The conditional pages (i.e., the catalogs that rarely change) are re-validated with their
+     * ETag and just downloaded and decoded again when they were modified (see ConditionalGets).
+     */
+    fun findElements(method: String, uri: URI, conditional: Boolean = false): Mono<List<T>> {
+        val request = {
+            controller().webclient.get()
+                        .uri(uri)
+                        .attributes(clientRegistrationId(controller().provider()))
+                        .attributes(operation("${controller().javaClass.simpleName}.$method"))
         }
+        val elements = if (conditional)
+                            controller().conditionalGet(method, uri, request,
+                                                        { decodeElements(method, it.bodyToMono(controller().clazzes())) }) { elements ->
+                                elements.map { copy(it as Any) }
+                            }
+                       else
+                            decodeElements(method, request().retrieve().bodyToMono(controller().clazzes()))
+
+        return controller().staleWhileRevalidate(uri, controller().singleFlight(method, uri, elements
+                    .timeout(Duration.ofMillis(10_000))
+                    .doOnSubscribe { controller().remoteRequests(method).increment() }) { elements ->
+            elements.map { copy(it as Any) }
+        }) { elements -> elements.map { copy(it as Any) } }
+    }
+
+    /**
+     * Stale elements of the uri for the fallbacks of the circuit breaker of the service, that does
+     * not call findElements while it is open (see ClientWebController.staleFallback).
+     */
+    fun staleElements(uri: URI): (Throwable) -> List<T>? =
+        controller().staleFallback(uri) { elements: List<T> -> elements.map { copy(it as Any) } }
+
+    private fun decodeElements(method: String, body: Mono<*>): Mono<List<T>> =
+        body.switchIfEmpty(controller().switchIfEmpty() as Mono<out Nothing>)
+            .doOnNext { s -> logger.debug("$method: {}", (s as Array<T>).contentToString()) }
+            .map { elements -> (elements as Array<T>).toMutableList() as List<T> }
+
+    /**
+     * Paged query engine. The page and its total count are requested to the iam-service at the
+     * same time (zipped) and returned in one Page, instead of waiting the page and then the count.
+     *
+     * The count of the filter (i.e., countKey) is read from the count cache, so scrolling the grid or
+     * refreshing it with the same filter just requests the page.
+     *
+     * The Mono is cold: the grids read ahead the next page subscribing it in the request thread
+     * (see PageReadAhead) and the blocking find* methods just block it.
+     *
+     * The count is not cached here but by cachedCount, since count can be a circuit breaker that
+     * returns its zero fallback.
+     */
+    fun page(countKey: String, pageable: Pageable, elements: Mono<List<T>>, count: Mono<Long>): Mono<Page<T>> {
+        val total = controller().pageCounts.getIfPresent(controller().countKey(countKey))
+
+        return if (total != null)
+                    elements.map<Page<T>> { PageImpl(it, pageable, total) }
+               else
+                    Mono.zip(elements, count.defaultIfEmpty(0L))
+                        .map<Page<T>> { PageImpl(it.t1, pageable, it.t2) }
+    }
+
+    fun findPage(countKey: String, pageable: Pageable, elements: Mono<List<T>>, count: Mono<Long>): Page<T> =
+        page(countKey, pageable, elements, count).block()!!
+
+    /**
+     * Count of a filter read through the count cache (see ClientWebController.pageCounts). The key
+     * must be the same one used by findPage, so the grids size and pages share the counts. The
+     * circuit breaker fallbacks are outside, so a failed count is never cached.
+     */
+    fun cachedCount(countKey: String, count: Mono<Long>): Mono<Long> {
+        val key = controller().countKey(countKey)
+        val total = controller().pageCounts.getIfPresent(key)
+
+        return if (total != null)
+                    Mono.just(total)
+               else
+                    controller().staleWhileRevalidate("count:$countKey", count)
+                                .doOnNext { controller().pageCounts.put(key, it) }
     }
 
     fun booleanStr(activo: Boolean) = if (activo) "1" else "0"
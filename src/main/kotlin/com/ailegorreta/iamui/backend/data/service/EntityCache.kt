@@ -0,0 +1,102 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  EntityCache.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.iamui.backend.data.service
+
+import com.ailegorreta.iamui.config.ServiceConfig
+import com.github.benmanes.caffeine.cache.Cache
+import com.github.benmanes.caffeine.cache.Caffeine
+import com.vaadin.flow.server.VaadinSession
+import io.micrometer.core.instrument.Metrics
+import io.micrometer.core.instrument.binder.cache.CaffeineStatsCounter
+import java.time.Duration
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Read-through cache of the single entity lookups (i.e., find by id or by name) of the
+ * Facultades, Roles and Perfiles. One cache is kept per Vaadin session, so a user that clicks
+ * many times the same Role does not go to the iam-service every time.
+ *
+ * The cache is bounded by size and by time (TTL). The services invalidate it when they
+ * save, assign or un-assign an entity. The statistics (hits, misses and evictions) of all
+ * sessions are recorded in the 'iam.entities' cache metrics exported by the actuator.
+ *
+ * @author rlh
+ * @project : iam-ui
+ * @date September 2023
+ */
+class EntityCache(maximumSize: Long, ttl: Duration) {
+
+    data class Key(val type: Class<*>, val by: String, val value: Any)
+
+    private val cache: Cache<Key, Any> = Caffeine.newBuilder()
+                                                 .maximumSize(maximumSize)
+                                                 .expireAfterWrite(ttl)
+                                                 .recordStats { CaffeineStatsCounter(Metrics.globalRegistry, CACHE_NAME) }
+                                                 .build()
+
+    fun get(key: Key): Any? = cache.getIfPresent(key)
+
+    fun put(key: Key, value: Any) = cache.put(key, value)
+
+    private val generations = ConcurrentHashMap<Class<*>, AtomicLong>()
+
+    /**
+     * Number of invalidations of the type, so a value read before an invalidation (e.g., a page
+     * read ahead) can be discarded instead of put after it.
+     */
+    fun generation(type: Class<*>): Long = generations.computeIfAbsent(type) { AtomicLong() }.get()
+
+    /**
+     * Invalidates all entities of the types. Roles have Facultades and Perfiles have Roles,
+     * so the caller must include the types that embed the modified one.
+     */
+    fun invalidate(vararg types: Class<*>) {
+        types.forEach { generations.computeIfAbsent(it) { AtomicLong() }.incrementAndGet() }
+        cache.asMap().keys.removeIf { types.contains(it.type) }
+    }
+
+    companion object {
+        const val CACHE_NAME = "iam.entities"
+
+        /**
+         * Returns the cache of the current Vaadin session. Calls done outside a locked session
+         * (e.g., background threads) do not have cache.
+         */
+        fun current(serviceConfig: ServiceConfig): EntityCache? {
+            val session = VaadinSession.getCurrent()
+
+            if (session == null || !session.hasLock()) return null
+
+            var entityCache = session.getAttribute(EntityCache::class.java)
+
+            if (entityCache == null) {
+                entityCache = EntityCache(serviceConfig.entityCacheMaximumSize,
+                                          Duration.ofSeconds(serviceConfig.entityCacheTtlSeconds))
+                session.setAttribute(EntityCache::class.java, entityCache)
+            }
+
+            return entityCache
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  EntityCatalog.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.iamui.backend.data.service
+
+import com.ailegorreta.iamui.ui.exceptions.RestClientException
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.github.benmanes.caffeine.cache.Cache
+import com.github.benmanes.caffeine.cache.Caffeine
+import reactor.core.publisher.Flux
+import reactor.core.publisher.Mono
+import java.time.Duration
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Application wide catalog of entities that almost never change (i.e., Companies and Groups) and
+ * that the Operation editors read many at a time. The catalog is shared by all sessions and it is
+ * filled incrementally: just the entities that are not in the catalog (or that are older than the
+ * ttl) are requested to the iam-service, at most 'concurrency' at the same time and waiting just once.
+ *
+ * Like the other caches shared by all sessions, the keys include the authorization scope of the
+ * user (see SingleFlight.scope), so a user never reads an entity its authorities do not allow.
+ *
+ * The catalog is bounded by maximumSize and the services invalidate a saved entity for all scopes
+ * (see invalidate). A key that is not found in the iam-service fails the look-up, so an editor
+ * never saves less entities than the ones selected. The catalog returns copies of its entities,
+ * so a view can modify them without affecting other sessions.
+ *
+ * @author rlh
+ * @project : iam-ui
+ * @date September 2023
+ */
+class EntityCatalog<T : Any>(private val mapper: ObjectMapper,
+                             private val clazz: Class<T>,
+                             ttl: Duration,
+                             maximumSize: Long,
+                             private val concurrency: Int,
+                             private val idOf: (T) -> Long?,
+                             private val nameOf: (T) -> String) {
+
+    data class Key<K>(val key: K, val scope: Set<String>)
+
+    private val byId: Cache<Key<Long>, T> = Caffeine.newBuilder()
+                                                    .maximumSize(maximumSize)
+                                                    .expireAfterWrite(ttl)
+                                                    .build()
+    private val byName: Cache<Key<String>, T> = Caffeine.newBuilder()
+                                                        .maximumSize(maximumSize)
+                                                        .expireAfterWrite(ttl)
+                                                        .build()
+
+    /**
+     * Must be called in the request thread, like the rest of the look-ups (see SingleFlight.scope).
+     */
+    fun findByIds(ids: Collection<Long>, remote: (Long) -> Mono<T>): List<T> =
+        find(ids, byId, remote)
+
+    fun findByNames(names: Collection<String>, remote: (String) -> Mono<T>): List<T> =
+        find(names, byName, remote)
+
+    /**
+     * Removes the entity from the catalog of all scopes, e.g., after the entity was saved. The
+     * entries with its id are removed too, so a renamed entity is no longer found by its old name.
+     */
+    fun invalidate(entity: T) {
+        val id = idOf(entity)
+        val name = nameOf(entity)
+
+        byId.asMap().keys.removeIf { it.key == id }
+        byName.asMap().entries.removeIf { it.key.key == name || (id != null && idOf(it.value) == id) }
+    }
+
+    fun clear() {
+        byId.invalidateAll()
+        byName.invalidateAll()
+    }
+
+    private fun put(entity: T, scope: Set<String>) {
+        val copy = copy(entity)
+
+        idOf(entity)?.let { byId.put(Key(it, scope), copy) }
+        byName.put(Key(nameOf(entity), scope), copy)
+    }
+
+    /**
+     * Returns the entities in the same order of the keys. A key that is not found in the
+     * iam-service fails with RestClientException.ENTITY_NOT_FOUND.
+     */
+    private fun <K : Any> find(keys: Collection<K>, index: Cache<Key<K>, T>, remote: (K) -> Mono<T>): List<T> {
+        val scope = SingleFlight.scope()
+        val missing = keys.filter { index.getIfPresent(Key(it, scope)) == null }.distinct()
+        val found = ConcurrentHashMap<K, T>()
+
+        if (missing.isNotEmpty())
+            Flux.fromIterable(missing)
+                .flatMap({ key -> remote(key).doOnNext { found[key] = it } }, concurrency)
+                .doOnNext { put(it, scope) }
+                .then()
+                .block()
+
+        val entities = keys.associateWith { key -> found[key] ?: index.getIfPresent(Key(key, scope)) }
+        val notFound = entities.filterValues { it == null }.keys
+
+        if (notFound.isNotEmpty())
+            throw RestClientException(RestClientException.ENTITY_NOT_FOUND,
+                                      "No se encontraron en el servicio IAM: ${notFound.joinToString()}")
+
+        return keys.map { key -> copy(entities[key]!!) }
+    }
+
+    private fun copy(entity: T): T = mapper.convertValue(entity, clazz)
+}
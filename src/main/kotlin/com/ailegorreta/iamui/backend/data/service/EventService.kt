@@ -22,6 +22,7 @@
 */
 package com.ailegorreta.iamui.backend.data.service
 
+import com.ailegorreta.iamui.security.config.RemoteCallMetricsFilter.operation
 import com.ailegorreta.iamui.backend.data.dto.GraphqlRequestBody
 import com.ailegorreta.iamui.backend.data.dto.Notification
 import com.ailegorreta.commons.utils.HasLogger
@@ -46,7 +47,7 @@ import reactor.core.publisher.Mono
  *  @date September 2023
  */
 @Service
-class EventService(@Qualifier("authorization_code") val webClient: WebClient,
+class EventService(@Qualifier("authorization_code_audit") val webClient: WebClient,
                    private val serviceConfig: ServiceConfig): HasLogger {
 
     fun uri(): UriComponentsBuilder = UriComponentsBuilder.fromUriString(serviceConfig.getAuditProvider())
@@ -65,6 +66,7 @@ class EventService(@Qualifier("authorization_code") val webClient: WebClient,
                             .accept(MediaType.APPLICATION_JSON)
                             .body(Mono.just(graphQLRequestBody), GraphqlRequestBody::class.java)
                             .attributes(clientRegistrationId(serviceConfig.securityClientId + "-oidc"))
+                            .attributes(operation("EventService.notifications"))
                             .retrieve()
                             .bodyToMono(GraphqlResponseNotifications::class.java)
                             .block()
@@ -22,13 +22,14 @@
  */
 package com.ailegorreta.iamui.backend.data.service
 
-import com.fasterxml.jackson.databind.JsonNode
+import com.ailegorreta.iamui.security.config.RemoteCallMetricsFilter.operation
 import com.fasterxml.jackson.databind.ObjectMapper
 import com.ailegorreta.client.security.service.CurrentSession
 import com.ailegorreta.iamui.backend.data.dto.facultad.FacultadDTO
+import com.ailegorreta.iamui.backend.data.dto.facultad.PerfilDTO
+import com.ailegorreta.iamui.backend.data.dto.facultad.RolDTO
 import com.ailegorreta.iamui.config.ServiceConfig
 import com.ailegorreta.iamui.ui.dataproviders.FacultadesGridDataProvider.FacultadFilter
-import com.ailegorreta.iamui.ui.exceptions.RestClientException
 import org.springframework.beans.factory.annotation.Qualifier
 import org.springframework.cloud.circuitbreaker.resilience4j.ReactiveResilience4JCircuitBreakerFactory
 import org.springframework.data.domain.Page
@@ -38,7 +39,6 @@ import org.springframework.security.oauth2.client.web.reactive.function.client.S
 import org.springframework.stereotype.Service
 import org.springframework.web.reactive.function.client.WebClient
 import reactor.core.publisher.Mono
-import java.io.IOException
 import java.time.LocalDateTime
 import java.util.*
 
@@ -67,39 +67,27 @@ class FacultadService(mapper: ObjectMapper,
     override fun clazzes() = Array<FacultadDTO>::class.java
     override fun switchIfEmpty() = Mono.just(arrayOfNulls<FacultadDTO>(0))
     override fun controller() = this
+    override val cachedEntities = true
 
     override fun toObject(res: String) = toObject(mapper, res, FacultadDTO::class.java)
 
-    override fun toList(res: String): List<FacultadDTO> {
-        val facultades: MutableList<FacultadDTO> = ArrayList()
-        try {
-            val json = mapper.readValue(res, JsonNode::class.java)
+    override fun toList(res: String) = toList(res, FacultadDTO::class.java)
 
-            if (json.isArray)
-                json.forEach {
-                    facultades.add(toObject(mapper, it.toString(), FacultadDTO::class.java))
-                }
-            else
-                throw RestClientException(RestClientException.STATUS_JSON_CONVERSION, "Se espera una array")
-        } catch (e: IOException) {
-            throw RestClientException(RestClientException.STATUS_JSON_CONVERSION, e)
-        }
-
-        return facultades
-    }
-
-    fun findAnyMatchingActive(filter: Optional<FacultadFilter>, pageable: Pageable): Page<FacultadDTO> {
+    fun findAnyMatchingActivePage(filter: Optional<FacultadFilter>, pageable: Pageable): Mono<Page<FacultadDTO>> {
         return if (filter.isPresent && filter.get().filter.isNotEmpty())
             if (filter.get().isShowActive)
-                findByNameActive(circuitBreaker!!, filter.get().filter, filter.get().isShowActive, pageable)
+                findByNameActivePage(circuitBreaker!!, filter.get().filter, filter.get().isShowActive, pageable)
             else
-                findByName(circuitBreaker!!, filter.get().filter, pageable)
+                findByNamePage(circuitBreaker!!, filter.get().filter, pageable)
         else if (filter.isPresent && filter.get().isShowActive)
-            findActive(circuitBreaker!!, filter.get().isShowActive, pageable)
+            findActivePage(circuitBreaker!!, filter.get().isShowActive, pageable)
         else
-            findAll(circuitBreaker!!, pageable)
+            findAllPage(circuitBreaker!!, pageable)
     }
 
+    fun findAnyMatchingActive(filter: Optional<FacultadFilter>, pageable: Pageable): Page<FacultadDTO> =
+        findAnyMatchingActivePage(filter, pageable).block()!!
+
     fun countAnyMatchingActive(filter: Optional<FacultadFilter>): Mono<Long> {
         return if (filter.isPresent && filter.get().filter.isNotEmpty())
             if (filter.get().isShowActive)
@@ -116,17 +104,18 @@ class FacultadService(mapper: ObjectMapper,
         facultad.fechaModificacion = LocalDateTime.now()
         facultad.usuarioModificacion = securityService.authenticatedUser.get().name
 
-        return circuitBreaker!!.run ( webclient.post()
+        return invalidating(circuitBreaker!!.run ( webclient.post()
                                 .uri(uri().path("/$baseUrlSingle/add").build().toUri())
                                 .accept(MediaType.APPLICATION_JSON)
                                 .body(Mono.just(facultad), FacultadDTO::class.java)
                                 .attributes(clientRegistrationId(controller().provider()))
+                                .attributes(operation("FacultadService.saveFacultad"))
                                 .retrieve()
                                 .bodyToMono(FacultadDTO::class.java)
             ) { throwable ->
                 logger.error("Alguno de los servicios el IAM (o ambos se encuentra NO disponible NO se lista ninguna facultad", throwable)
                 Mono.empty()
-            }
+            }, FacultadDTO::class.java, RolDTO::class.java, PerfilDTO::class.java)
     }
 
 }
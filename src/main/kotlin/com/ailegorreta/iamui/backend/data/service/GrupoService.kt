@@ -22,19 +22,18 @@
  */
 package com.ailegorreta.iamui.backend.data.service
 
-import com.fasterxml.jackson.databind.JsonNode
+import com.ailegorreta.iamui.security.config.RemoteCallMetricsFilter.operation
 import com.fasterxml.jackson.databind.ObjectMapper
 import com.ailegorreta.iamui.backend.data.dto.compania.GrupoDTO
 import com.ailegorreta.iamui.backend.data.dto.compania.NewGrupoDTO
 import com.ailegorreta.iamui.config.ServiceConfig
-import com.ailegorreta.iamui.ui.exceptions.RestClientException
 import org.springframework.beans.factory.annotation.Qualifier
 import org.springframework.http.MediaType
 import org.springframework.security.oauth2.client.web.reactive.function.client.ServerOAuth2AuthorizedClientExchangeFilterFunction.clientRegistrationId
 import org.springframework.stereotype.Service
 import org.springframework.web.reactive.function.client.WebClient
 import reactor.core.publisher.Mono
-import java.io.IOException
+import java.time.Duration
 import java.util.*
 
 /**
@@ -58,42 +57,39 @@ class GrupoService(mapper: ObjectMapper,
     override fun switchIfEmpty() = Mono.just(arrayOfNulls<GrupoDTO>(0))
     override fun controller() = this
 
-    override fun toObject(res: String) = toObject(mapper, res, GrupoDTO::class.java)
-
-    override fun toList(res: String) : List<GrupoDTO> {
-        val grupos = ArrayList<GrupoDTO>()
-
-        try {
-            var json:JsonNode = mapper.readValue(res, JsonNode::class.java)
+    private val catalog = EntityCatalog(mapper, GrupoDTO::class.java,
+                                        Duration.ofSeconds(serviceConfig.catalogTtlSeconds),
+                                        serviceConfig.catalogMaximumSize, serviceConfig.batchConcurrency,
+                                        { it.id }, { it.nombre })
 
-            if (json.isArray())
-                json.forEach {
-                    grupos.add(toObject(mapper, it.toString(), GrupoDTO::class.java))
-                }
-            else
-                throw RestClientException(RestClientException.STATUS_JSON_CONVERSION, "Se expera una array");
-        } catch (e: IOException) {
-            throw RestClientException(RestClientException.STATUS_JSON_CONVERSION, e)
-        }
+    override fun toObject(res: String) = toObject(mapper, res, GrupoDTO::class.java)
 
-        return grupos
-    }
+    override fun toList(res: String) = toList(res, GrupoDTO::class.java)
 
     fun updateGrupo(grupo: GrupoDTO) = webclient.post()
         .uri(uri().path("/$baseUrlSingle/update").build().toUri())
         .accept(MediaType.APPLICATION_JSON)
         .body(Mono.just(grupo), GrupoDTO::class.java)
         .attributes(clientRegistrationId(controller().provider()))
+        .attributes(operation("GrupoService.updateGrupo"))
         .retrieve()
         .bodyToMono(GrupoDTO::class.java)
+        .doOnNext { catalog.invalidate(it) }
 
     fun newGrupo(grupo: GrupoDTO, nombre: String) = webclient.post()
         .uri(uri().path("/$baseUrlSingle/add").build().toUri())
         .accept(MediaType.APPLICATION_JSON)
         .body(Mono.just(NewGrupoDTO(grupoDTO = grupo, nombre = nombre)), NewGrupoDTO::class.java)
         .attributes(clientRegistrationId(controller().provider()))
+        .attributes(operation("GrupoService.newGrupo"))
         .retrieve()
         .bodyToMono(GrupoDTO::class.java)
+        .doOnNext { catalog.invalidate(it) }
+
+    /**
+     * Batch look-up for the editors that select many Groups (see CompaniaService.findByNames).
+     */
+    fun findByIds(ids: Collection<Long>): List<GrupoDTO> = catalog.findByIds(ids) { findById(it) }
 
     fun countMiembros(id: Long): Mono<Long> {
         return controller().webclient.get()
@@ -101,6 +97,7 @@ class GrupoService(mapper: ObjectMapper,
                 .queryParam("id",id)
                 .build().toUri())
             .attributes(clientRegistrationId(controller().provider()))
+            .attributes(operation("GrupoService.countMiembros"))
             .retrieve()
             .bodyToMono(Long::class.java)
             .cast(Long::class.java)
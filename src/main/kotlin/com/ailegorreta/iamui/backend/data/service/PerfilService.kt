@@ -22,14 +22,13 @@
  */
 package com.ailegorreta.iamui.backend.data.service
 
-import com.fasterxml.jackson.databind.JsonNode
+import com.ailegorreta.iamui.security.config.RemoteCallMetricsFilter.operation
 import com.fasterxml.jackson.databind.ObjectMapper
 import com.ailegorreta.iamui.backend.data.dto.facultad.AssignRolDTO
 import com.ailegorreta.iamui.backend.data.dto.facultad.PerfilDTO
 import com.ailegorreta.client.security.service.CurrentSession
 import com.ailegorreta.iamui.config.ServiceConfig
 import com.ailegorreta.iamui.ui.dataproviders.PerfilFilter
-import com.ailegorreta.iamui.ui.exceptions.RestClientException
 import org.springframework.beans.factory.annotation.Qualifier
 import org.springframework.data.domain.Page
 import org.springframework.data.domain.Pageable
@@ -37,7 +36,6 @@ import org.springframework.http.MediaType
 import org.springframework.stereotype.Service
 import org.springframework.web.reactive.function.client.WebClient
 import reactor.core.publisher.Mono
-import java.io.IOException
 import java.util.*
 import org.springframework.security.oauth2.client.web.reactive.function.client.ServletOAuth2AuthorizedClientExchangeFilterFunction.clientRegistrationId
 import java.time.LocalDateTime
@@ -69,40 +67,27 @@ class PerfilService: ClientWebController, CustomWebClientService<PerfilDTO> {
 	override fun clazzes() = Array<PerfilDTO>::class.java
 	override fun switchIfEmpty() = Mono.just(arrayOfNulls<PerfilDTO>(0))
 	override fun controller() = this
+	override val cachedEntities = true
 
 	override fun toObject(res: String) = toObject(mapper, res, PerfilDTO::class.java)
 	
-	override fun toList(res: String) : List<PerfilDTO> {
-		val perfiles = ArrayList<PerfilDTO>()
-		
-		try {
-			var json:JsonNode = mapper.readValue(res, JsonNode::class.java)
-			
-			if (json.isArray())
-				json.forEach {
-					perfiles.add(toObject(mapper, it.toString(), PerfilDTO::class.java))
-				}
-			else
-				throw RestClientException(RestClientException.STATUS_JSON_CONVERSION, "Se expera una array");			
-		} catch (e: IOException) {
-			throw RestClientException(RestClientException.STATUS_JSON_CONVERSION, e)
-		}
-		
-		return perfiles
-	}
+	override fun toList(res: String) = toList(res, PerfilDTO::class.java)
 	
-	fun findAnyMatchingActive(filter: Optional<PerfilFilter>, pageable: Pageable): Page<PerfilDTO> {
+	fun findAnyMatchingActivePage(filter: Optional<PerfilFilter>, pageable: Pageable): Mono<Page<PerfilDTO>> {
 		return if (filter.isPresent() && filter.get().filter.isNotEmpty())
 			if (filter.get().showActive)
-				findByNameActive(filter.get().filter, filter.get().showActive, pageable)
+				findByNameActivePage(filter.get().filter, filter.get().showActive, pageable)
 			else
-				findByName(filter.get().filter, pageable)
+				findByNamePage(filter.get().filter, pageable)
 		else
 			if (filter.isPresent() && filter.get().showActive)
-				findActive(filter.get().showActive, pageable)
+				findActivePage(filter.get().showActive, pageable)
 			else
-				findAll(pageable)
+				findAllPage(pageable)
 	}
+
+	fun findAnyMatchingActive(filter: Optional<PerfilFilter>, pageable: Pageable): Page<PerfilDTO> =
+		findAnyMatchingActivePage(filter, pageable).block()!!
 	
 	fun countAnyMatchingActive(filter: Optional<PerfilFilter>): Mono<Long> {
 		return if (filter.isPresent() && !filter.get().filter.isEmpty())
@@ -121,30 +106,37 @@ class PerfilService: ClientWebController, CustomWebClientService<PerfilDTO> {
 		perfil.fechaModificacion = LocalDateTime.now()
 		perfil.usuarioModificacion = securityService.authenticatedUser.get().name
 
-		return webclient.post()
+		return invalidating(webclient.post()
 						.uri(uri().path("/$baseUrlSingle/add").build().toUri())
 						.accept(MediaType.APPLICATION_JSON)
 						.body(Mono.just(perfil), PerfilDTO::class.java)
 						.attributes(clientRegistrationId(controller().provider()))
+						.attributes(operation("PerfilService.savePerfil"))
 						.retrieve()
-						.bodyToMono(PerfilDTO::class.java)
+						.bodyToMono(PerfilDTO::class.java), PerfilDTO::class.java)
 	}
 
-	fun assignRole(assignRol: AssignRolDTO) = webclient.post()
+	fun assignRole(assignRol: AssignRolDTO) = invalidating(webclient.post()
 													.uri(uri().path("/$baseUrlSingle/add/rol").build().toUri())
 													.accept(MediaType.APPLICATION_JSON)
 													.body(Mono.just(assignRol), AssignRolDTO::class.java)
 													.attributes(clientRegistrationId(controller().provider()))
+													.attributes(operation("PerfilService.assignRole"))
 													.retrieve()
-													.bodyToMono(AssignRolDTO::class.java)
+													.bodyToMono(AssignRolDTO::class.java), PerfilDTO::class.java)
 	
-	fun unAssignRole(assignRol: AssignRolDTO) = webclient.post()
+	fun unAssignRole(assignRol: AssignRolDTO) = invalidating(webclient.post()
 														.uri(uri().path("/$baseUrlSingle/delete/rol").build().toUri())
 														.accept(MediaType.APPLICATION_JSON)
 														.body(Mono.just(assignRol), AssignRolDTO::class.java)
 														.attributes(clientRegistrationId(controller().provider()))
+														.attributes(operation("PerfilService.unAssignRole"))
 														.retrieve()
-														.bodyToMono(AssignRolDTO::class.java)
+														.bodyToMono(AssignRolDTO::class.java), PerfilDTO::class.java)
+
+	fun assignRoles(assignRoles: Collection<AssignRolDTO>) = batch(assignRoles) { assignRole(it) }
+
+	fun unAssignRoles(assignRoles: Collection<AssignRolDTO>) = batch(assignRoles) { unAssignRole(it) }
 
 	fun findByNameDetail(nombre: String) = webclient.get()
 													.uri(controller().uri().path("/by/nombre/detail")
@@ -152,6 +144,7 @@ class PerfilService: ClientWebController, CustomWebClientService<PerfilDTO> {
 														.build().toUri())
 													.accept(MediaType.APPLICATION_JSON)
 													.attributes(clientRegistrationId(controller().provider()))
+													.attributes(operation("PerfilService.findByNameDetail"))
 													.retrieve()
 													.bodyToMono(PerfilDTO::class.java)
 													.switchIfEmpty(switchIfEmpty() as Mono<out Nothing>)
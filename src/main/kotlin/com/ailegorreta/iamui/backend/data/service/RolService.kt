@@ -22,14 +22,14 @@
  */
 package com.ailegorreta.iamui.backend.data.service
 
-import com.fasterxml.jackson.databind.JsonNode
+import com.ailegorreta.iamui.security.config.RemoteCallMetricsFilter.operation
 import com.fasterxml.jackson.databind.ObjectMapper
 import com.ailegorreta.iamui.backend.data.dto.facultad.AssignFacultadDTO
+import com.ailegorreta.iamui.backend.data.dto.facultad.PerfilDTO
 import com.ailegorreta.iamui.backend.data.dto.facultad.RolDTO
 import com.ailegorreta.client.security.service.CurrentSession
 import com.ailegorreta.iamui.config.ServiceConfig
 import com.ailegorreta.iamui.ui.dataproviders.RolFilter
-import com.ailegorreta.iamui.ui.exceptions.RestClientException
 import org.springframework.beans.factory.annotation.Qualifier
 import org.springframework.cloud.circuitbreaker.resilience4j.ReactiveResilience4JCircuitBreakerFactory
 import org.springframework.data.domain.Page
@@ -40,7 +40,6 @@ import org.springframework.security.oauth2.client.web.reactive.function.client.S
 import org.springframework.stereotype.Service
 import org.springframework.web.reactive.function.client.WebClient
 import reactor.core.publisher.Mono
-import java.io.IOException
 import java.time.LocalDateTime
 import java.util.*
 
@@ -67,37 +66,27 @@ class RolService(mapper: ObjectMapper,
     override fun clazzes() = Array<RolDTO>::class.java
     override fun switchIfEmpty() = Mono.just(arrayOfNulls<RolDTO>(0))
     override fun controller() =  this
+    override val cachedEntities = true
 
     override fun toObject(res: String) = toObject(mapper, res, RolDTO::class.java)
 
-    override fun toList(res: String): List<RolDTO> {
-        val roles: MutableList<RolDTO> = ArrayList()
+    override fun toList(res: String) = toList(res, RolDTO::class.java)
 
-        try {
-            val json = mapper.readValue(res, JsonNode::class.java)
-
-            if (json.isArray)
-                json.forEach {
-                    roles.add(toObject(mapper, it.toString(), RolDTO::class.java))
-                }
-        } catch (e: IOException) {
-            throw RestClientException(RestClientException.STATUS_JSON_CONVERSION, e)
-        }
-        return roles
-    }
-
-    fun findAnyMatchingActive(filter: Optional<RolFilter>, pageable: Pageable): Page<RolDTO> {
+    fun findAnyMatchingActivePage(filter: Optional<RolFilter>, pageable: Pageable): Mono<Page<RolDTO>> {
         return if (filter.isPresent && filter.get().filter.isNotEmpty())
                   if (filter.get().isShowActive)
-                      findByNameActive(circuitBreaker!!, filter.get().filter, filter.get().isShowActive, pageable)
+                      findByNameActivePage(circuitBreaker!!, filter.get().filter, filter.get().isShowActive, pageable)
                   else
-                      findByName(circuitBreaker!!, filter.get().filter, pageable)
+                      findByNamePage(circuitBreaker!!, filter.get().filter, pageable)
                else if (filter.isPresent && filter.get().isShowActive)
-                       findActive(circuitBreaker!!, filter.get().isShowActive, pageable)
+                       findActivePage(circuitBreaker!!, filter.get().isShowActive, pageable)
                     else
-                      findAll(circuitBreaker!!, pageable)
+                      findAllPage(circuitBreaker!!, pageable)
     }
 
+    fun findAnyMatchingActive(filter: Optional<RolFilter>, pageable: Pageable): Page<RolDTO> =
+        findAnyMatchingActivePage(filter, pageable).block()!!
+
     fun countAnyMatchingActive(filter: Optional<RolFilter>): Mono<Long> {
         return if (filter.isPresent && filter.get().filter.isNotEmpty())
                  if (filter.get().isShowActive)
@@ -110,11 +99,12 @@ class RolService(mapper: ObjectMapper,
                        count(circuitBreaker!!)
     }
 
-    fun findByIdRol(idRol: Long): Mono<RolDTO> = circuitBreaker!!.run( webclient.get()
+    fun findByIdRol(idRol: Long): Mono<RolDTO> = cached("idRol", idRol, circuitBreaker!!.run( webclient.get()
                                             .uri(controller().uri().path("/$baseUrlSingle/by/idRol")
                                                 .queryParam("idRol", idRol)
                                             .build().toUri())
                                             .attributes(clientRegistrationId(controller().provider()))
+                                            .attributes(operation("RolService.findByIdRol"))
                                             .retrieve()
                                             .bodyToMono(RolDTO::class.java)
                                             .doOnNext { s -> logger.debug("Found id rol: {}", s.toString()) }
@@ -122,47 +112,54 @@ class RolService(mapper: ObjectMapper,
         ) { throwable ->
             logger.error("Alguno de los servicios el IAM (o ambos se encuentra NO disponible NO se lista ninguna facultad", throwable)
             Mono.empty()
-        }
+        })
 
     fun saveRol(rol: RolDTO): Mono<RolDTO> {
         rol.fechaModificacion = LocalDateTime.now()
         rol.usuarioModificacion = securityService.authenticatedUser.get().name
 
-        return circuitBreaker!!.run( webclient.post()
+        return invalidating(circuitBreaker!!.run( webclient.post()
                                     .uri(uri().path("/$baseUrlSingle/add").build().toUri())
                                     .accept(MediaType.APPLICATION_JSON)
                                     .body(Mono.just(rol), RolDTO::class.java)
                                     .attributes(ServletOAuth2AuthorizedClientExchangeFilterFunction.clientRegistrationId(controller().provider()))
+                                    .attributes(operation("RolService.saveRol"))
                                     .retrieve()
                                     .bodyToMono(RolDTO::class.java)
         ) { throwable ->
             logger.error("Alguno de los servicios el IAM (o ambos se encuentra NO disponible NO se lista ninguna facultad", throwable)
             Mono.empty()
-        }
+        }, RolDTO::class.java, PerfilDTO::class.java)
     }
 
-    fun assignPermit(assignFacultad: AssignFacultadDTO): Mono<AssignFacultadDTO> = circuitBreaker!!.run(  webclient.post()
+    fun assignPermit(assignFacultad: AssignFacultadDTO): Mono<AssignFacultadDTO> = invalidating(circuitBreaker!!.run(  webclient.post()
                                         .uri(uri().path("/$baseUrlSingle/add/facultad").build().toUri())
                                         .accept(MediaType.APPLICATION_JSON)
                                         .body(Mono.just(assignFacultad), AssignFacultadDTO::class.java)
                                         .attributes(ServletOAuth2AuthorizedClientExchangeFilterFunction.clientRegistrationId(controller().provider()))
+                                        .attributes(operation("RolService.assignPermit"))
                                         .retrieve()
                                         .bodyToMono(AssignFacultadDTO::class.java)
         ) { throwable ->
             logger.error("Alguno de los servicios el IAM (o ambos se encuentra NO disponible NO se lista ninguna facultad", throwable)
             Mono.empty()
-        }
+        }, RolDTO::class.java, PerfilDTO::class.java)
 
-    fun unAssignPermit(assignFacultad: AssignFacultadDTO): Mono<AssignFacultadDTO> = circuitBreaker!!.run( webclient.post()
+    fun unAssignPermit(assignFacultad: AssignFacultadDTO): Mono<AssignFacultadDTO> = invalidating(circuitBreaker!!.run( webclient.post()
                                         .uri(uri().path("/$baseUrlSingle/delete/facultad").build().toUri())
                                         .accept(MediaType.APPLICATION_JSON)
                                         .body(Mono.just(assignFacultad), AssignFacultadDTO::class.java)
                                         .attributes(ServletOAuth2AuthorizedClientExchangeFilterFunction.clientRegistrationId(controller().provider()))
+                                        .attributes(operation("RolService.unAssignPermit"))
                                         .retrieve()
                                         .bodyToMono(AssignFacultadDTO::class.java)
         ) { throwable ->
             logger.error("Alguno de los servicios el IAM (o ambos se encuentra NO disponible NO se lista ninguna facultad", throwable)
             Mono.empty()
-        }
+        }, RolDTO::class.java, PerfilDTO::class.java)
+
+    fun assignPermits(assignFacultades: Collection<AssignFacultadDTO>) = batch(assignFacultades) { assignPermit(it) }
+
+    fun unAssignPermits(assignFacultades: Collection<AssignFacultadDTO>) = batch(assignFacultades) { unAssignPermit(it) }
 
 }
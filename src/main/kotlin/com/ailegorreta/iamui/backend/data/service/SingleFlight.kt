@@ -0,0 +1,76 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  SingleFlight.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.iamui.backend.data.service
+
+import io.micrometer.core.instrument.Metrics
+import org.springframework.security.core.context.SecurityContextHolder
+import reactor.core.publisher.Mono
+import java.net.URI
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Coalesces the identical GETs that are in flight at the same time, for all sessions (e.g., a login
+ * storm where every user renders the Home and the same statistics).
+ *
+ * Two GETs are identical when they have the same URI and the same authorization scope (i.e., the
+ * authorities of the user), so a user never reads what its authorities do not allow. The first one
+ * is issued (in its request thread, with its token) and the rest wait for its response. The entry
+ * is removed when the response arrives, so nothing is cached after that.
+ *
+ * Just for idempotent GETs. The 'iam.ui.remote.singleflight' counter records the issued and the
+ * coalesced calls, tagged by service and operation.
+ *
+ * @author rlh
+ * @project : iam-ui
+ * @date September 2023
+ */
+class SingleFlight(private val service: String) {
+
+    data class Key(val uri: URI, val scope: Set<String>)
+
+    private val inFlight = ConcurrentHashMap<Key, Mono<*>>()
+
+    /**
+     * The waiters receive the response through copy, so the sessions never share mutable DTOs.
+     */
+    fun <R : Any> get(operation: String, uri: URI, remote: Mono<R>, copy: (R) -> R = { it }): Mono<R> = Mono.defer {
+        val key = Key(uri, scope())
+        var issued = false
+        val shared = inFlight.computeIfAbsent(key) {
+            issued = true
+            remote.doFinally { inFlight.remove(key) }.cache()
+        }
+
+        Metrics.counter("iam.ui.remote.singleflight", "service", service, "operation", operation,
+                        "outcome", if (issued) "issued" else "coalesced").increment()
+        if (issued) shared as Mono<R> else (shared as Mono<R>).map(copy)
+    }
+
+    companion object {
+        /**
+         * Authorization scope of the current user, i.e., its authorities.
+         */
+        fun scope(): Set<String> =
+            SecurityContextHolder.getContext().authentication?.authorities?.map { it.authority }?.toSet() ?: emptySet()
+    }
+}
@@ -0,0 +1,170 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  StaleCache.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.iamui.backend.data.service
+
+import com.ailegorreta.client.components.utils.UIUtils
+import com.ailegorreta.commons.utils.HasLogger
+import com.github.benmanes.caffeine.cache.Cache
+import com.github.benmanes.caffeine.cache.Caffeine
+import com.vaadin.flow.component.ComponentUtil
+import com.vaadin.flow.component.UI
+import io.github.resilience4j.bulkhead.BulkheadFullException
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException
+import io.micrometer.core.instrument.Metrics
+import io.micrometer.core.instrument.binder.cache.CaffeineStatsCounter
+import org.springframework.web.reactive.function.client.WebClientRequestException
+import org.springframework.web.reactive.function.client.WebClientResponseException
+import reactor.core.publisher.Mono
+import java.time.Duration
+import java.time.Instant
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeoutException
+
+/**
+ * Stale-while-revalidate fallback of the remote queries (pages, counts and entities) of a service.
+ *
+ * The last successful response of every query key is kept. When the iam-service is unavailable
+ * (i.e., its circuit breaker is open, its bulkhead is full, it answers 5xx, it does not answer in time
+ * or the connection is refused, see RemoteCallResilience) the last response is returned instead of an empty grid, and the user is notified that the data
+ * is not up to date. During retryAfter the stale response is returned without calling the
+ * iam-service, so many users refreshing do not hammer it.
+ * After that, the stale response is still returned and the query is revalidated in background; when
+ * it succeeds the fresh response replaces the stale one.
+ *
+ * The keys include the authorization scope of the user (see SingleFlight). The fresh responses are
+ * kept as they are returned and just the stale ones are returned through copy, since they are
+ * shared by all sessions. The 'iam.ui.stale.served' counter records the stale responses.
+ *
+ * The queries wrapped by the circuit breaker of the service (see ClientWebController) are not
+ * subscribed while it is open, so its fallback returns the stale response too (see fallback).
+ *
+ * @author rlh
+ * @project : iam-ui
+ * @date September 2023
+ */
+class StaleCache(private val service: String, maximumSize: Long, private val retryAfter: Duration): HasLogger {
+
+    data class Key(val key: Any, val scope: Set<String>)
+
+    /* failedAt: when the last call failed, i.e., the key is served stale until retryAfter */
+    private class Entry(val value: Any?, val at: Instant, val failedAt: Instant? = null)
+
+    private val responses: Cache<Key, Entry> = Caffeine.newBuilder()
+                                                       .maximumSize(maximumSize)
+                                                       .recordStats { CaffeineStatsCounter(Metrics.globalRegistry, CACHE_NAME) }
+                                                       .build()
+    private val revalidating = ConcurrentHashMap.newKeySet<Key>()
+
+    fun <R> get(key: Any, remote: Mono<R>, copy: (R) -> R = { it }): Mono<R> = Mono.defer {
+        val staleKey = Key(key, SingleFlight.scope())
+        val ui = UI.getCurrent()
+        val entry = responses.getIfPresent(staleKey)
+
+        if (entry?.failedAt != null) {
+            if (Duration.between(entry.failedAt, Instant.now()) >= retryAfter && revalidating.add(staleKey))
+                fresh(staleKey, remote).doFinally { revalidating.remove(staleKey) }
+                                             .subscribe({ logger.info("Se actualizaron los datos de $service: $key") },
+                                                        { failed(staleKey, it) })
+            ClientWebController.fallback(Mono.just(stale(entry, ui, copy)))
+        } else
+            fresh(staleKey, remote).onErrorResume({ unavailable(it) }) { error ->
+                val last = responses.getIfPresent(staleKey) ?: return@onErrorResume Mono.error(error)
+
+                failed(staleKey, error)
+                logger.warn("Falló $service: $key, se regresan los datos de ${last.at}", error)
+                ClientWebController.fallback(Mono.just(stale(last, ui, copy)))
+            }
+    }
+
+    /**
+     * Fallback of an outer circuit breaker, that never subscribes the query when it is open: the last
+     * response of the key, marked stale, when the iam-service is unavailable, otherwise null.
+     * It must be created in the request thread, since the fallback is called in the thread that
+     * failed, without the user or the UI.
+     */
+    fun <R> fallback(key: Any, copy: (R) -> R = { it }): (Throwable) -> R? {
+        val staleKey = Key(key, SingleFlight.scope())
+        val ui = UI.getCurrent()
+
+        return fallback@ { error ->
+            if (!unavailable(error)) return@fallback null
+            val last = responses.getIfPresent(staleKey) ?: return@fallback null
+
+            failed(staleKey, error)
+            logger.warn("Falló $service: $key, se regresan los datos de ${last.at}", error)
+            stale(last, ui, copy)
+        }
+    }
+
+    private fun <R> fresh(staleKey: Key, remote: Mono<R>): Mono<R> =
+        remote.doOnNext { responses.put(staleKey, Entry(it, Instant.now())) }
+
+    /*
+     * Just the iam-service unavailability is served stale: the other errors (e.g., a 404 of a
+     * deleted entity) are the response and the last one is discarded.
+     */
+    private fun failed(staleKey: Key, error: Throwable) {
+        if (unavailable(error))
+            responses.asMap().computeIfPresent(staleKey) { _, entry -> Entry(entry.value, entry.at, Instant.now()) }
+        else
+            responses.invalidate(staleKey)
+    }
+
+    /**
+     * Open breaker, full bulkhead, a 5xx response, a timeout (see RemoteCallResilience) or a refused
+     * connection.
+     */
+    private fun unavailable(error: Throwable?): Boolean =
+        error is CallNotPermittedException || error is BulkheadFullException ||
+        error is TimeoutException || error is WebClientRequestException ||
+        (error is WebClientResponseException && error.statusCode.is5xxServerError) ||
+        (error?.cause != null && error.cause !== error && unavailable(error.cause))
+
+    private fun <R> stale(entry: Entry, ui: UI?, copy: (R) -> R): R {
+        Metrics.counter("iam.ui.stale.served", "service", service).increment()
+        if (ui != null) notifyStale(ui, entry.at)
+
+        return copy(entry.value as R)
+    }
+
+    /*
+     * At most one notification per UI every retryAfter. The UI can be locked by the request that
+     * waits the response, so the notification is queued with access.
+     */
+    private fun notifyStale(ui: UI, at: Instant) {
+        ui.access {
+            val notified = ComponentUtil.getData(ui, NOTIFIED) as Instant?
+
+            if (notified == null || Duration.between(notified, Instant.now()) >= retryAfter) {
+                ComponentUtil.setData(ui, NOTIFIED, Instant.now())
+                UIUtils.showNotification("El servicio IAM no está disponible, se muestran los datos de hace " +
+                                         "${Duration.between(at, Instant.now()).seconds} segundos")
+            }
+        }
+    }
+
+    companion object {
+        const val CACHE_NAME = "iam.stale"
+        private const val NOTIFIED = "iam.stale.notified"
+    }
+}
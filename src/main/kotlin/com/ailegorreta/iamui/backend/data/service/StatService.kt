@@ -22,6 +22,7 @@
  */
 package com.ailegorreta.iamui.backend.data.service
 
+import com.ailegorreta.iamui.security.config.RemoteCallMetricsFilter.operation
 import com.fasterxml.jackson.databind.ObjectMapper
 import com.ailegorreta.iamui.config.ServiceConfig
 import org.springframework.stereotype.Service
@@ -58,42 +59,54 @@ class StatService (mapper: ObjectMapper,
     override fun toList(res: String) : List<Int> { return ArrayList<Int>() }
 
     fun porcFacultadesInactivas(): Mono<Int> {
-        return controller().webclient.get()
-            .uri(controller().uri().path("/${controller().baseUrlSingle}/facultades/inactivas/porcentaje")
-                .build().toUri())
+        val uri = controller().uri().path("/${controller().baseUrlSingle}/facultades/inactivas/porcentaje")
+                                .build().toUri()
+
+        return singleFlight("porcFacultadesInactivas", uri, controller().webclient.get()
+            .uri(uri)
             .attributes(ServletOAuth2AuthorizedClientExchangeFilterFunction.clientRegistrationId(controller().provider()))
+            .attributes(operation("StatService.porcFacultadesInactivas"))
             .retrieve()
             .bodyToMono(Int::class.java)
-            .cast(Int::class.java)
+            .cast(Int::class.java))
     }
 
     fun porcRolesInactivos(): Mono<Int> {
-        return controller().webclient.get()
-            .uri(controller().uri().path("/${controller().baseUrlSingle}/roles/inactivos/porcentaje")
-                .build().toUri())
+        val uri = controller().uri().path("/${controller().baseUrlSingle}/roles/inactivos/porcentaje")
+                                .build().toUri()
+
+        return singleFlight("porcRolesInactivos", uri, controller().webclient.get()
+            .uri(uri)
             .attributes(ServletOAuth2AuthorizedClientExchangeFilterFunction.clientRegistrationId(controller().provider()))
+            .attributes(operation("StatService.porcRolesInactivos"))
             .retrieve()
             .bodyToMono(Int::class.java)
-            .cast(Int::class.java)
+            .cast(Int::class.java))
     }
 
     fun porcPerfilesInactivos(): Mono<Int> {
-        return controller().webclient.get()
-            .uri(controller().uri().path("/${controller().baseUrlSingle}/perfiles/inactivos/porcentaje")
-                .build().toUri())
+        val uri = controller().uri().path("/${controller().baseUrlSingle}/perfiles/inactivos/porcentaje")
+                                .build().toUri()
+
+        return singleFlight("porcPerfilesInactivos", uri, controller().webclient.get()
+            .uri(uri)
             .attributes(ServletOAuth2AuthorizedClientExchangeFilterFunction.clientRegistrationId(controller().provider()))
+            .attributes(operation("StatService.porcPerfilesInactivos"))
             .retrieve()
             .bodyToMono(Int::class.java)
-            .cast(Int::class.java)
+            .cast(Int::class.java))
     }
 
     fun porcUsuariosInactivos(): Mono<Int> {
-        return controller().webclient.get()
-            .uri(controller().uri().path("/${controller().baseUrlSingle}/usuarios/inactivos/porcentaje")
-                .build().toUri())
+        val uri = controller().uri().path("/${controller().baseUrlSingle}/usuarios/inactivos/porcentaje")
+                                .build().toUri()
+
+        return singleFlight("porcUsuariosInactivos", uri, controller().webclient.get()
+            .uri(uri)
             .attributes(ServletOAuth2AuthorizedClientExchangeFilterFunction.clientRegistrationId(controller().provider()))
+            .attributes(operation("StatService.porcUsuariosInactivos"))
             .retrieve()
             .bodyToMono(Int::class.java)
-            .cast(Int::class.java)
+            .cast(Int::class.java))
     }
 }
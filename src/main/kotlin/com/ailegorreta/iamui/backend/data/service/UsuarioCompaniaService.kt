@@ -22,22 +22,22 @@
  */
 package com.ailegorreta.iamui.backend.data.service
 
-import com.fasterxml.jackson.databind.JsonNode
+import com.ailegorreta.iamui.security.config.RemoteCallMetricsFilter.operation
 import com.fasterxml.jackson.databind.ObjectMapper
 import com.ailegorreta.iamui.backend.data.dto.compania.AsignaAreaDTO
 import com.ailegorreta.iamui.backend.data.dto.compania.UsuarioDTO
 import com.ailegorreta.iamui.backend.data.dto.compania.SolicitudAsignacionDTO
 import com.ailegorreta.client.security.service.CurrentSession
 import com.ailegorreta.iamui.config.ServiceConfig
-import com.ailegorreta.iamui.ui.exceptions.RestClientException
 import org.springframework.beans.factory.annotation.Qualifier
+import org.springframework.data.domain.Page
+import org.springframework.data.domain.Pageable
 import org.springframework.http.MediaType
 import org.springframework.security.oauth2.client.web.reactive.function.client.ServerOAuth2AuthorizedClientExchangeFilterFunction.clientRegistrationId
 import org.springframework.security.oauth2.client.web.reactive.function.client.ServletOAuth2AuthorizedClientExchangeFilterFunction
 import org.springframework.stereotype.Service
 import org.springframework.web.reactive.function.client.WebClient
 import reactor.core.publisher.Mono
-import java.io.IOException
 import java.time.Duration
 import java.time.LocalDateTime
 import java.util.*
@@ -73,30 +73,14 @@ class UsuarioCompaniaService: ClientWebController, CustomWebClientService<Usuari
 
     override fun toObject(res: String) = toObject(mapper, res, UsuarioDTO::class.java)
 
-    override fun toList(res: String): List<UsuarioDTO> {
-        val usuarios = ArrayList<UsuarioDTO>()
-
-        try {
-            val json: JsonNode = mapper.readValue(res, JsonNode::class.java)
-
-            if (json.isArray())
-                json.forEach {
-                    usuarios.add(toObject(mapper, it.toString(), UsuarioDTO::class.java))
-                }
-            else
-                throw RestClientException(RestClientException.STATUS_JSON_CONVERSION, "Se expera una array");
-        } catch (e: IOException) {
-            throw RestClientException(RestClientException.STATUS_JSON_CONVERSION, e)
-        }
-
-        return usuarios
-    }
+    override fun toList(res: String) = toList(res, UsuarioDTO::class.java)
 
     fun findByIdUsuario(idUsuario: Long) = webclient.get()
                                                     .uri(controller().uri().path("/${controller().baseUrlSingle}/by/idUsuario")
                                                             .queryParam("idUsuario", idUsuario)
                                                             .build().toUri())
                                                     .attributes(clientRegistrationId(controller().provider()))
+                                                    .attributes(operation("UsuarioCompaniaService.findByIdUsuario"))
                                                     .retrieve()
                                                     .bodyToMono(UsuarioDTO::class.java)
                                                     .doOnNext { s -> logger.debug("Find by id usuario: {}", s.toString()) }
@@ -109,6 +93,7 @@ class UsuarioCompaniaService: ClientWebController, CustomWebClientService<Usuari
                 .queryParam("nombre", nombre)
                 .build().toUri())
             .attributes(ServletOAuth2AuthorizedClientExchangeFilterFunction.clientRegistrationId(controller().provider()))
+            .attributes(operation("UsuarioCompaniaService.findByNombreUsuario"))
             .retrieve()
             .bodyToMono(controller().clazz())
             .doOnNext { s -> logger.debug("findByNombreUsuario: {}", s.toString()) }
@@ -121,6 +106,7 @@ class UsuarioCompaniaService: ClientWebController, CustomWebClientService<Usuari
                                                         .queryParam("depth", booleanStr(depth))
                                                         .build().toUri())
                                                     .attributes(clientRegistrationId(controller().provider()))
+                                                    .attributes(operation("UsuarioCompaniaService.findUsuarioByIdWithSupervisor"))
                                                     .retrieve()
                                                     .bodyToMono(UsuarioDTO::class.java)
                                                     .doOnNext { s -> logger.debug("findUsuarioByIdWithSupervisor: {}", s.toString()) }
@@ -133,6 +119,7 @@ class UsuarioCompaniaService: ClientWebController, CustomWebClientService<Usuari
                 .queryParam("administrador", booleanStr(administrador))
                 .build().toUri())
             .attributes(clientRegistrationId(controller().provider()))
+            .attributes(operation("UsuarioCompaniaService.findByInternoAndAdministrador"))
             .retrieve()
             .bodyToMono(controller().clazzes())
             .timeout(Duration.ofMillis(10_000))
@@ -155,6 +142,7 @@ class UsuarioCompaniaService: ClientWebController, CustomWebClientService<Usuari
                         .accept(MediaType.APPLICATION_JSON)
                         .body(Mono.just(usuario), UsuarioDTO::class.java)
                         .attributes(clientRegistrationId(controller().provider()))
+                        .attributes(operation("UsuarioCompaniaService.saveUsuario"))
                         .retrieve()
                         .bodyToMono(UsuarioDTO::class.java)
     }
@@ -164,6 +152,7 @@ class UsuarioCompaniaService: ClientWebController, CustomWebClientService<Usuari
                                                                 .queryParam("nombreAdministrador", nombre)
                                                                 .build().toUri())
                                                             .attributes(clientRegistrationId(controller().provider()))
+                                                            .attributes(operation("UsuarioCompaniaService.findGrafoAdministrador"))
                                                             .retrieve()
                                                             .bodyToMono(String::class.java)
                                                             .cast(String::class.java)
@@ -173,6 +162,7 @@ class UsuarioCompaniaService: ClientWebController, CustomWebClientService<Usuari
             .queryParam("nombreAdministrador", nombre)
             .build().toUri())
         .attributes(clientRegistrationId(controller().provider()))
+        .attributes(operation("UsuarioCompaniaService.findGrafoAdministradorMaestro"))
         .retrieve()
         .bodyToMono(String::class.java)
         .cast(String::class.java)
@@ -182,6 +172,7 @@ class UsuarioCompaniaService: ClientWebController, CustomWebClientService<Usuari
                         .accept(MediaType.APPLICATION_JSON)
                         .body(Mono.just(asignaArea), AsignaAreaDTO::class.java)
                         .attributes(clientRegistrationId(controller().provider()))
+                        .attributes(operation("UsuarioCompaniaService.assignArea"))
                         .retrieve()
                         .bodyToMono(AsignaAreaDTO::class.java)
 
@@ -190,6 +181,7 @@ class UsuarioCompaniaService: ClientWebController, CustomWebClientService<Usuari
                         .accept(MediaType.APPLICATION_JSON)
                         .body(Mono.just(unAsignaArea), AsignaAreaDTO::class.java)
                         .attributes(clientRegistrationId(controller().provider()))
+                        .attributes(operation("UsuarioCompaniaService.unAssignArea"))
                         .retrieve()
                         .bodyToMono(AsignaAreaDTO::class.java)
 
@@ -199,6 +191,7 @@ class UsuarioCompaniaService: ClientWebController, CustomWebClientService<Usuari
                 .queryParam("idArea", idArea)
                 .build().toUri())
             .attributes(clientRegistrationId(controller().provider()))
+            .attributes(operation("UsuarioCompaniaService.findEmpleadosAssigned"))
             .retrieve()
             .bodyToMono(controller().clazzes())
             .timeout(Duration.ofMillis(10_000))
@@ -214,40 +207,44 @@ class UsuarioCompaniaService: ClientWebController, CustomWebClientService<Usuari
 
     /*
      * Hierarchical data set for solicitudes. Usuarios 1:m Areas
+     *
+     * Just the page of employees that the TreeGrid shows is read, each employee has its requested
+     * (i.e., inactive) areas as children.
      */
-    fun findSolicitudesAsignacion(): Collection<SolicitudAsignacionDTO> {
-        val res = controller().webclient.get()
-                                    .uri(controller().uri().path("/${controller().baseUrlMany}/solicitudes/asignacion")
+    fun findSolicitudesAsignacion(pageable: Pageable): Page<SolicitudAsignacionDTO> {
+        val elements = findElements("findSolicitudesAsignacion",
+                                    uri().path("/$baseUrlMany/solicitudes/asignacion")
+                                        .queryParam("page", pageable.pageNumber)
+                                        .queryParam("size", pageable.pageSize)
                                         .build().toUri())
-                                    .attributes(clientRegistrationId(controller().provider()))
-                                    .retrieve()
-                                    .bodyToMono(controller().clazzes())
-                                    .timeout(Duration.ofMillis(10_000))
-                                    .switchIfEmpty(controller().switchIfEmpty() as Mono<out Nothing>)
-                                    .doOnNext { s -> logger.debug("Found findSolicitudesAsignacion usuarios: {}", (s as Array<UsuarioDTO>).contentToString()) }
-                                    .map{ elements -> listOf(elements) }
-                                    as  Mono<List<UsuarioDTO>>
-        val solicitudes: ArrayList<SolicitudAsignacionDTO> = ArrayList()
-        val result = res.block()!!.first() as Array<UsuarioDTO>
-        val employees = result.toMutableList()
-
-        employees.forEach {
-            val employee = SolicitudAsignacionDTO(nombre = it.nombreCompleto(), nombreUsuario = it.nombreUsuario!!,
-                                                  activo = it.activo, asignado = null)
-
-            solicitudes.add(employee)
-            for (asignado in it.areas)
-                if (!asignado.activo)
-                    employee.areas.add(
-                        SolicitudAsignacionDTO(nombre = asignado.area.nombre,
-                                                              nombreUsuario = employee.nombreUsuario,
-                                                              idArea = asignado.area.idArea,
-                                                              nombreArea = asignado.area.nombre,
-                                                              activo = null, asignado = asignado.activo)
-                    )
-        }
-
-        return solicitudes
+
+        return findPage(SOLICITUDES_COUNT_KEY, pageable, elements, countSolicitudesAsignacion())
+                    .map { toSolicitudAsignacion(it) }
+    }
+
+    fun countSolicitudesAsignacion(): Mono<Long> = cachedCount(SOLICITUDES_COUNT_KEY, webclient.get()
+                                            .uri(uri().path("/$baseUrlMany/solicitudes/asignacion/count")
+                                                .build().toUri())
+                                            .attributes(clientRegistrationId(controller().provider()))
+                                            .attributes(operation("UsuarioCompaniaService.countSolicitudesAsignacion"))
+                                            .retrieve()
+                                            .bodyToMono(Long::class.java))
+
+    private fun toSolicitudAsignacion(usuario: UsuarioDTO): SolicitudAsignacionDTO {
+        val employee = SolicitudAsignacionDTO(nombre = usuario.nombreCompleto(), nombreUsuario = usuario.nombreUsuario!!,
+                                              activo = usuario.activo, asignado = null)
+
+        for (asignado in usuario.areas)
+            if (!asignado.activo)
+                employee.areas.add(
+                    SolicitudAsignacionDTO(nombre = asignado.area.nombre,
+                                           nombreUsuario = employee.nombreUsuario,
+                                           idArea = asignado.area.idArea,
+                                           nombreArea = asignado.area.nombre,
+                                           activo = null, asignado = asignado.activo)
+                )
+
+        return employee
     }
 
     /*
@@ -258,9 +255,20 @@ class UsuarioCompaniaService: ClientWebController, CustomWebClientService<Usuari
                                             .accept(MediaType.APPLICATION_JSON)
                                             .body(Mono.just(AproveAsingacionDTO(nombreUsuario, idArea, approve)), AproveAsingacionDTO::class.java)
                                             .attributes(clientRegistrationId(controller().provider()))
+                                            .attributes(operation("UsuarioCompaniaService.approveSolicitudAsignacion"))
                                             .retrieve()
                                             .bodyToMono(AproveAsingacionDTO::class.java)
 
+    /*
+     * Approves (or rejects) many solicitudes at once, i.e., one batch. The pending solicitudes
+     * count is invalidated when the batch ends.
+     */
+    fun approveSolicitudesAsignacion(solicitudes: Collection<SolicitudAsignacionDTO>, approve: Boolean) =
+        invalidating(batch(solicitudes) { approveSolicitudAsignacion(it.nombreUsuario, it.idArea!!, approve) })
+
     data class AproveAsingacionDTO constructor (val nombreUsuario: String, val idArea: Long, val approve: Boolean)
-}
 
+    companion object {
+        const val SOLICITUDES_COUNT_KEY = "solicitudes"
+    }
+}
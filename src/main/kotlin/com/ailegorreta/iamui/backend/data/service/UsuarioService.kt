@@ -22,20 +22,18 @@
  */
 package com.ailegorreta.iamui.backend.data.service
 
-import com.fasterxml.jackson.databind.JsonNode
+import com.ailegorreta.iamui.security.config.RemoteCallMetricsFilter.operation
 import com.fasterxml.jackson.databind.ObjectMapper
 import com.ailegorreta.iamui.backend.data.dto.facultad.AssignToUserDTO
 import com.ailegorreta.iamui.backend.data.dto.facultad.FacultadDTO
 import com.ailegorreta.iamui.backend.data.dto.facultad.UsuarioDTO
 import com.ailegorreta.iamui.config.ServiceConfig
-import com.ailegorreta.iamui.ui.exceptions.RestClientException
 import org.springframework.beans.factory.annotation.Qualifier
 import org.springframework.http.MediaType
 import org.springframework.security.oauth2.client.web.reactive.function.client.ServletOAuth2AuthorizedClientExchangeFilterFunction
 import org.springframework.stereotype.Service
 import org.springframework.web.reactive.function.client.WebClient
 import reactor.core.publisher.Mono
-import java.io.IOException
 import java.time.Duration
 import java.util.*
 
@@ -62,24 +60,7 @@ class UsuarioService(mapper: ObjectMapper,
 
     override fun toObject(res: String) = toObject(mapper, res, UsuarioDTO::class.java)
 
-    override fun toList(res: String) : List<UsuarioDTO> {
-        val usuarios = ArrayList<UsuarioDTO>()
-
-        try {
-            val json:JsonNode = mapper.readValue(res, JsonNode::class.java)
-
-            if (json.isArray())
-                json.forEach {
-                    usuarios.add(toObject(mapper, it.toString(), UsuarioDTO::class.java))
-                }
-            else
-                throw RestClientException(RestClientException.STATUS_JSON_CONVERSION, "Se espera una array")
-        } catch (e: IOException) {
-            throw RestClientException(RestClientException.STATUS_JSON_CONVERSION, e)
-        }
-
-        return usuarios
-    }
+    override fun toList(res: String) = toList(res, UsuarioDTO::class.java)
 
     fun findFacultades(nombre: String): List<String> {
         val res = controller().webclient.get()
@@ -87,13 +68,13 @@ class UsuarioService(mapper: ObjectMapper,
                 .queryParam("nombre", nombre)
                 .build().toUri())
             .attributes(ServletOAuth2AuthorizedClientExchangeFilterFunction.clientRegistrationId(controller().provider()))
+            .attributes(operation("UsuarioService.findFacultades"))
             .retrieve()
             .bodyToMono(Array<FacultadDTO>::class.java)
             .timeout(Duration.ofMillis(10_000))
             .switchIfEmpty(controller().switchIfEmpty() as Mono<out Nothing>)
             .doOnNext { s -> logger.debug("Found facultades: {}", (s as Array<FacultadDTO>).contentToString()) }
-            .map{ elements -> listOf(elements) }
-            as  Mono<List<FacultadDTO>>
+            .map{ elements -> (elements as Array<FacultadDTO>).toList() }
 
         val facultades = ArrayList<String>()
 
@@ -110,6 +91,7 @@ class UsuarioService(mapper: ObjectMapper,
                     .build().toUri()
             )
             .attributes(ServletOAuth2AuthorizedClientExchangeFilterFunction.clientRegistrationId(controller().provider()))
+            .attributes(operation("UsuarioService.findFacultadesDetail"))
             .retrieve()
             .bodyToMono(Array<FacultadDTO>::class.java)
             .timeout(Duration.ofMillis(10_000))
@@ -122,14 +104,19 @@ class UsuarioService(mapper: ObjectMapper,
         return result.toMutableList()
     }
 
-    fun findGrafoFacultades(name: String) = controller().webclient.get()
-                                                       .uri(controller().uri().path("/${controller().baseUrlSingle}/grafo/facultades")
-                                                            .queryParam("nombre", name)
-                                                            .build().toUri())
+    fun findGrafoFacultades(name: String): Mono<String> {
+        val uri = controller().uri().path("/${controller().baseUrlSingle}/grafo/facultades")
+                                    .queryParam("nombre", name)
+                                    .build().toUri()
+
+        return singleFlight("findGrafoFacultades", uri, controller().webclient.get()
+                                                        .uri(uri)
                                                         .attributes(ServletOAuth2AuthorizedClientExchangeFilterFunction.clientRegistrationId(controller().provider()))
+                                                        .attributes(operation("UsuarioService.findGrafoFacultades"))
                                                         .retrieve()
                                                         .bodyToMono(String::class.java)
-                                                        .cast(String::class.java)
+                                                        .cast(String::class.java))
+    }
 
     fun findByCompany(nombre: String): Collection<UsuarioDTO> {
         val res = controller().webclient.get()
@@ -137,6 +124,7 @@ class UsuarioService(mapper: ObjectMapper,
                 .queryParam("nombreCompania", nombre)
                 .build().toUri())
             .attributes(ServletOAuth2AuthorizedClientExchangeFilterFunction.clientRegistrationId(controller().provider()))
+            .attributes(operation("UsuarioService.findByCompany"))
             .retrieve()
             .bodyToMono(controller().clazzes())
             .timeout(Duration.ofMillis(10_000))
@@ -155,6 +143,7 @@ class UsuarioService(mapper: ObjectMapper,
                 .queryParam("nombreUsuario", nombreUsuario)
                 .build().toUri())
             .attributes(ServletOAuth2AuthorizedClientExchangeFilterFunction.clientRegistrationId(controller().provider()))
+            .attributes(operation("UsuarioService.findByNameUsuario"))
             .retrieve()
             .bodyToMono(controller().clazz())
             .doOnNext { s -> logger.debug("findByNameUser: {}", s.toString()) }
@@ -165,6 +154,7 @@ class UsuarioService(mapper: ObjectMapper,
         .accept(MediaType.APPLICATION_JSON)
         .body(Mono.just(assignPerfil), AssignToUserDTO::class.java)
         .attributes(ServletOAuth2AuthorizedClientExchangeFilterFunction.clientRegistrationId(controller().provider()))
+        .attributes(operation("UsuarioService.assignPerfil"))
         .retrieve()
         .bodyToMono(AssignToUserDTO::class.java)
 
@@ -173,6 +163,7 @@ class UsuarioService(mapper: ObjectMapper,
         .accept(MediaType.APPLICATION_JSON)
         .body(Mono.just(assignFacultad), AssignToUserDTO::class.java)
         .attributes(ServletOAuth2AuthorizedClientExchangeFilterFunction.clientRegistrationId(controller().provider()))
+        .attributes(operation("UsuarioService.assignFacultadExtra"))
         .retrieve()
         .bodyToMono(AssignToUserDTO::class.java)
 
@@ -181,6 +172,7 @@ class UsuarioService(mapper: ObjectMapper,
         .accept(MediaType.APPLICATION_JSON)
         .body(Mono.just(desAssignFacultad), AssignToUserDTO::class.java)
         .attributes(ServletOAuth2AuthorizedClientExchangeFilterFunction.clientRegistrationId(controller().provider()))
+        .attributes(operation("UsuarioService.unAssignFacultadExtra"))
         .retrieve()
         .bodyToMono(AssignToUserDTO::class.java)
 
@@ -189,6 +181,7 @@ class UsuarioService(mapper: ObjectMapper,
         .accept(MediaType.APPLICATION_JSON)
         .body(Mono.just(forbidFacultad), AssignToUserDTO::class.java)
         .attributes(ServletOAuth2AuthorizedClientExchangeFilterFunction.clientRegistrationId(controller().provider()))
+        .attributes(operation("UsuarioService.forbidFacultad"))
         .retrieve()
         .bodyToMono(AssignToUserDTO::class.java)
 
@@ -197,6 +190,12 @@ class UsuarioService(mapper: ObjectMapper,
         .accept(MediaType.APPLICATION_JSON)
         .body(Mono.just(desForbidFacultad), AssignToUserDTO::class.java)
         .attributes(ServletOAuth2AuthorizedClientExchangeFilterFunction.clientRegistrationId(controller().provider()))
+        .attributes(operation("UsuarioService.unForbidFacultad"))
         .retrieve()
         .bodyToMono(AssignToUserDTO::class.java)
+
+    fun forbidFacultades(forbidFacultades: Collection<AssignToUserDTO>) = batch(forbidFacultades) { forbidFacultad(it) }
+
+    fun unForbidFacultades(desForbidFacultades: Collection<AssignToUserDTO>) = batch(desForbidFacultades) { unForbidFacultad(it) }
+
 }
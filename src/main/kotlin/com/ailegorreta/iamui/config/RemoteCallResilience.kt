@@ -0,0 +1,117 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  RemoteCallResilience.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.iamui.config
+
+import com.ailegorreta.commons.utils.HasLogger
+import com.ailegorreta.iamui.security.config.RemoteCallMetricsFilter
+import io.github.resilience4j.bulkhead.BulkheadConfig
+import io.github.resilience4j.bulkhead.BulkheadRegistry
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator
+import io.micrometer.core.instrument.Metrics
+import org.springframework.stereotype.Component
+import org.springframework.web.reactive.function.client.ClientRequest
+import org.springframework.web.reactive.function.client.ClientResponse
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction
+import org.springframework.web.reactive.function.client.ExchangeFunction
+import reactor.core.publisher.Mono
+import java.time.Duration
+
+/**
+ * One circuit breaker and one (semaphore) bulkhead per remote operation, applied to all the remote
+ * calls by an ExchangeFilterFunction of the WebClients. So a slow graph end-point opens just its own
+ * breaker and a hanging look-up can take at most its bulkhead concurrent calls, not every thread.
+ *
+ * The operation is the one of the metrics (see RemoteCallMetricsFilter.operation). The responses
+ * with a 5xx status and the calls without response after timeout-millis are failures of the breaker.
+ * The timeout is applied here, inside the breaker, because the timeouts of the services and the
+ * TimeLimiter cancel the call and a cancelled call is not recorded by the breaker. Calls rejected
+ * by an open breaker or a full bulkhead fail with CallNotPermittedException or BulkheadFullException.
+ *
+ * The bulkheads do not wait for a permit: a semaphore bulkhead waits blocking the subscribing
+ * thread, and the batches (see ClientWebController.batch) subscribe on the Netty event loop.
+ *
+ * Configured in microservice.resilience (see ServiceConfig). The breakers state and the bulkheads
+ * available calls are exported as resilience4j.circuitbreaker.* and resilience4j.bulkhead.* metrics
+ * tagged by name, and the rejected calls in the 'iam.ui.bulkhead.rejected' counter.
+ *
+ * @project iam-ui
+ * @author rlh
+ * @date: September 2023
+ */
+@Component
+class RemoteCallResilience(serviceConfig: ServiceConfig): ExchangeFilterFunction, HasLogger {
+
+    private val timeout = Duration.ofMillis(serviceConfig.remoteTimeoutMillis)
+
+    val circuitBreakers: CircuitBreakerRegistry = CircuitBreakerRegistry.of(
+                                CircuitBreakerConfig.custom()
+                                                    .failureRateThreshold(serviceConfig.breakerFailureRateThreshold)
+                                                    .slowCallDurationThreshold(Duration.ofMillis(serviceConfig.breakerSlowCallMillis))
+                                                    .waitDurationInOpenState(Duration.ofMillis(serviceConfig.breakerWaitOpenMillis))
+                                                    .slidingWindowSize(serviceConfig.breakerSlidingWindowSize)
+                                                    .minimumNumberOfCalls(serviceConfig.breakerSlidingWindowSize)
+                                                    .build())
+
+    val bulkheads: BulkheadRegistry = BulkheadRegistry.of(
+                                BulkheadConfig.custom()
+                                              .maxConcurrentCalls(serviceConfig.bulkheadMaxConcurrentCalls)
+                                              .maxWaitDuration(Duration.ZERO)
+                                              .build())
+
+    init {
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitBreakers).bindTo(Metrics.globalRegistry)
+        TaggedBulkheadMetrics.ofBulkheadRegistry(bulkheads).bindTo(Metrics.globalRegistry)
+        circuitBreakers.eventPublisher.onEntryAdded { added ->
+            added.addedEntry.eventPublisher.onStateTransition {
+                logger.warn("Circuit breaker ${it.circuitBreakerName}: ${it.stateTransition}")
+            }
+        }
+        bulkheads.eventPublisher.onEntryAdded { added ->
+            added.addedEntry.eventPublisher.onCallRejected {
+                Metrics.counter("iam.ui.bulkhead.rejected", "name", it.bulkheadName).increment()
+            }
+        }
+    }
+
+    override fun filter(request: ClientRequest, next: ExchangeFunction): Mono<ClientResponse> {
+        val operation = request.attribute(RemoteCallMetricsFilter.OPERATION_ATTRIBUTE)
+                               .map { it.toString() }
+                               .orElse(request.url().path)
+
+        return next.exchange(request)
+                   .timeout(timeout)
+                   .flatMap { response ->
+                        if (response.statusCode().is5xxServerError)
+                            response.createException().flatMap { Mono.error<ClientResponse>(it) }
+                        else
+                            Mono.just(response)
+                   }
+                   .transformDeferred(CircuitBreakerOperator.of(circuitBreakers.circuitBreaker(operation)))
+                   .transformDeferred(BulkheadOperator.of(bulkheads.bulkhead(operation)))
+    }
+}
@@ -96,18 +96,97 @@ class ServiceConfig: SecurityServiceConfig {
     private val useLoadBalanced: Boolean = false
     override fun useLoadBalanced(): Boolean = useLoadBalanced
 
+    @Value("\${microservice.iam.entity-cache.maximum-size:200}")
+    val entityCacheMaximumSize: Long = 200
+
+    @Value("\${microservice.iam.entity-cache.ttl-seconds:60}")
+    val entityCacheTtlSeconds: Long = 60
+
+    @Value("\${microservice.iam.catalog.ttl-seconds:300}")
+    val catalogTtlSeconds: Long = 300
+
+    @Value("\${microservice.iam.catalog.maximum-size:1000}")
+    val catalogMaximumSize: Long = 1000
+
+    @Value("\${microservice.iam.conditional-get.maximum-size:200}")
+    val conditionalGetMaximumSize: Long = 200
+
+    @Value("\${microservice.iam.compania.lazy-areas:false}")
+    val companiaLazyAreas: Boolean = false
+
+    @Value("\${microservice.iam.count-cache.ttl-seconds:30}")
+    val countCacheTtlSeconds: Long = 30
+
+    @Value("\${microservice.iam.grid.count-mode:exact}")
+    val gridCountMode: String = "exact"
+
+    @Value("\${microservice.iam.grid.count-estimate:200}")
+    val gridCountEstimate: Int = 200
+
+    @Value("\${microservice.iam.grid.filter-debounce-millis:300}")
+    val filterDebounceMillis: Long = 300
+
+    @Value("\${microservice.iam.grid.read-ahead:true}")
+    val gridReadAhead: Boolean = true
+
+    @Value("\${microservice.iam.batch.concurrency:4}")
+    val batchConcurrency: Int = 4
+
+    @Value("\${microservice.cache.system-date.refresh-seconds:600}")
+    val systemDateRefreshSeconds: Long = 600
+
+    @Value("\${microservice.cache.system-date.timeout-millis:2000}")
+    val systemDateTimeoutMillis: Long = 2000
+
+    @Value("\${microservice.cache.system-date.retry-seconds:60}")
+    val systemDateRetrySeconds: Long = 60
+
+    @Value("\${microservice.resilience.circuit-breaker.failure-rate-threshold:50}")
+    val breakerFailureRateThreshold: Float = 50f
+
+    @Value("\${microservice.resilience.timeout-millis:3500}")
+    val remoteTimeoutMillis: Long = 3500
+
+    @Value("\${microservice.resilience.circuit-breaker.slow-call-millis:2000}")
+    val breakerSlowCallMillis: Long = 2000
+
+    @Value("\${microservice.resilience.circuit-breaker.wait-open-millis:5000}")
+    val breakerWaitOpenMillis: Long = 5000
+
+    @Value("\${microservice.resilience.circuit-breaker.sliding-window-size:10}")
+    val breakerSlidingWindowSize: Int = 10
+
+    @Value("\${microservice.resilience.bulkhead.max-concurrent-calls:20}")
+    val bulkheadMaxConcurrentCalls: Int = 20
+
+    @Value("\${microservice.resilience.stale.enabled:true}")
+    val staleEnabled: Boolean = true
+
+    @Value("\${microservice.resilience.stale.maximum-size:500}")
+    val staleMaximumSize: Long = 500
+
     /**
      * Circuit breaker global configuration. For more information see:
      * https://docs.spring.io/spring-cloud-circuitbreaker/docs/current/reference/html/
+     *
+     * It is the breaker of the services (with their fallbacks), so it has the same settings than the
+     * breakers of the remote operations (see RemoteCallResilience) and does not open before them. The
+     * TimeLimiter gives the remote call its timeout-millis plus a margin, so the timeout recorded by
+     * the operation breaker happens first.
      */
-    val circuitBreakerConfig = CircuitBreakerConfig.custom()
-                                                    .failureRateThreshold(50f)
-                                                    .waitDurationInOpenState(Duration.ofMillis(1000))
-                                                    .slidingWindowSize(5)
-                                                    .build()
-    val timeLimiterConfig: TimeLimiterConfig = TimeLimiterConfig.custom()
-                                                                .timeoutDuration(Duration.ofSeconds(4))
-                                                                .build()
+    val circuitBreakerConfig: CircuitBreakerConfig by lazy {
+        CircuitBreakerConfig.custom()
+                            .failureRateThreshold(breakerFailureRateThreshold)
+                            .waitDurationInOpenState(Duration.ofMillis(breakerWaitOpenMillis))
+                            .slidingWindowSize(breakerSlidingWindowSize)
+                            .minimumNumberOfCalls(breakerSlidingWindowSize)
+                            .build()
+    }
+    val timeLimiterConfig: TimeLimiterConfig by lazy {
+        TimeLimiterConfig.custom()
+                         .timeoutDuration(Duration.ofMillis(remoteTimeoutMillis + TIME_LIMITER_MARGIN_MILLIS))
+                         .build()
+    }
 
     // the circuitBreakerConfig and timeLimiterConfig objects
     @Bean
@@ -119,4 +198,7 @@ class ServiceConfig: SecurityServiceConfig {
         }
     }
 
+    companion object {
+        const val TIME_LIMITER_MARGIN_MILLIS = 500L
+    }
 }
@@ -0,0 +1,56 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  ThreadsConfig.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.iamui.config
+
+import com.ailegorreta.commons.utils.HasLogger
+import org.apache.coyote.ProtocolHandler
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer
+import org.springframework.context.annotation.Bean
+import org.springframework.context.annotation.Configuration
+import java.util.concurrent.Executors
+
+/**
+ * Opt-in execution in virtual threads (spring.threads.virtual.enabled=true).
+ *
+ * All Vaadin requests are handled by Tomcat and the views and data providers block the request
+ * thread while they wait the iam-service (i.e., Mono.block()). With virtual threads a blocked request
+ * does not pin a platform thread, so many concurrent sessions do not exhaust the Tomcat pool.
+ *
+ * note: Spring Boot 3.2 reads the same property, so this class can be deleted when we upgrade.
+ *
+ * @project iam-ui
+ * @author rlh
+ * @date: September 2023
+ */
+@Configuration
+@ConditionalOnProperty(value = ["spring.threads.virtual.enabled"], havingValue = "true")
+class ThreadsConfig: HasLogger {
+
+    @Bean
+    fun virtualThreadsProtocolHandler() = TomcatProtocolHandlerCustomizer<ProtocolHandler> { protocolHandler ->
+        logger.info("Las peticiones de Tomcat se ejecutan en virtual threads")
+        protocolHandler.executor = Executors.newVirtualThreadPerTaskExecutor()
+    }
+
+}
@@ -0,0 +1,110 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  ViewMetricsConfig.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.iamui.config
+
+import com.ailegorreta.commons.utils.HasLogger
+import com.vaadin.flow.server.ServiceInitEvent
+import com.vaadin.flow.server.VaadinRequest
+import com.vaadin.flow.server.VaadinRequestInterceptor
+import com.vaadin.flow.server.VaadinResponse
+import com.vaadin.flow.server.VaadinServiceInitListener
+import com.vaadin.flow.server.VaadinSession
+import com.vaadin.flow.spring.annotation.SpringComponent
+import io.micrometer.core.instrument.DistributionSummary
+import io.micrometer.core.instrument.Metrics
+import io.micrometer.core.instrument.Timer
+import java.time.Duration
+
+/**
+ * Render time instrumentation of the views (i.e., Vaadin routes).
+ *
+ * - iam.ui.view.attach: timer from the navigation (BeforeEnter) until the view is attached (AfterNavigation).
+ * - iam.ui.view.render: timer from the navigation until the end of its request, i.e., including the
+ *   grids first pages.
+ * - iam.ui.view.remote.calls and iam.ui.view.js.bytes: remote calls and JavaScript sent by the navigation.
+ *
+ * All tagged by the view. Every Vaadin request with remote calls or JavaScript is logged with its
+ * trace summary (see ViewTrace).
+ *
+ * @project iam-ui
+ * @author rlh
+ * @date: September 2023
+ */
+@SpringComponent
+class ViewMetricsConfig: VaadinServiceInitListener, VaadinRequestInterceptor, HasLogger {
+
+    override fun serviceInit(event: ServiceInitEvent) {
+        event.addVaadinRequestInterceptor(this)
+        event.source.addUIInitListener { uiEvent ->
+            val ui = uiEvent.ui
+
+            ui.addBeforeEnterListener { beforeEnter ->
+                ViewTrace.current()?.apply {
+                    view = beforeEnter.navigationTarget.simpleName
+                    navigationStart = System.nanoTime()
+                    this.ui = ui
+                }
+            }
+            ui.addAfterNavigationListener {
+                val trace = ViewTrace.current()
+
+                if (trace?.view != null)
+                    Timer.builder("iam.ui.view.attach")
+                         .tag("view", trace.view!!)
+                         .register(Metrics.globalRegistry)
+                         .record(Duration.ofNanos(System.nanoTime() - trace.navigationStart))
+            }
+        }
+    }
+
+    override fun requestStart(request: VaadinRequest, response: VaadinResponse) {
+        ViewTrace.start()
+    }
+
+    override fun handleException(request: VaadinRequest, response: VaadinResponse, session: VaadinSession,
+                                 exception: Exception) { }
+
+    override fun requestEnd(request: VaadinRequest, response: VaadinResponse, session: VaadinSession?) {
+        val trace = ViewTrace.current() ?: return
+
+        ViewTrace.end()
+        if (trace.isEmpty()) return
+
+        if (trace.view != null) {
+            val view = trace.view!!
+            val render = Duration.ofNanos(System.nanoTime() - trace.navigationStart)
+            val uiCalls = trace.ui?.let { ViewTrace.of(it).remoteCalls.get() } ?: 0
+
+            Timer.builder("iam.ui.view.render").tag("view", view).register(Metrics.globalRegistry).record(render)
+            DistributionSummary.builder("iam.ui.view.remote.calls").tag("view", view)
+                               .register(Metrics.globalRegistry).record(trace.remoteCalls.get().toDouble())
+            DistributionSummary.builder("iam.ui.view.js.bytes").baseUnit("bytes").tag("view", view)
+                               .register(Metrics.globalRegistry).record(trace.jsBytes.get().toDouble())
+            logger.info("Vista $view: ${render.toMillis()} ms, ${trace.remoteCalls.get()} llamadas remotas " +
+                        "(${trace.responseBytes.get()} bytes), ${trace.jsBytes.get()} bytes de JS. " +
+                        "Llamadas remotas de la UI: $uiCalls")
+        } else
+            logger.debug("Petición ${request.pathInfo ?: "/"}: ${trace.remoteCalls.get()} llamadas remotas " +
+                         "(${trace.responseBytes.get()} bytes), ${trace.jsBytes.get()} bytes de JS")
+    }
+}
@@ -0,0 +1,107 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  ViewTrace.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.iamui.config
+
+import com.vaadin.flow.component.ComponentUtil
+import com.vaadin.flow.component.UI
+import com.vaadin.flow.component.page.Page
+import com.vaadin.flow.component.page.PendingJavaScriptResult
+import java.io.Serializable
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Counters of what the UI does in the server: remote calls, bytes read from the remote calls and
+ * bytes of JavaScript sent with executeJs.
+ *
+ * There are two traces: one per Vaadin request (i.e., what one navigation or one click costs) and
+ * one per UI that accumulates all its requests. See ViewMetricsConfig for the navigation timers and
+ * the log of every request.
+ *
+ * The remote calls are counted when they are subscribed, so the calls subscribed outside a request
+ * (e.g., a background page read ahead) are just counted in the UI trace, if any.
+ *
+ * @project iam-ui
+ * @author rlh
+ * @date: September 2023
+ */
+class ViewTrace : Serializable {
+
+    val remoteCalls = AtomicInteger()
+    val responseBytes = AtomicLong()
+    val jsBytes = AtomicLong()
+
+    /* navigation of the request, if any */
+    var view: String? = null
+    var navigationStart = 0L
+    var ui: UI? = null
+
+    fun isEmpty() = view == null && remoteCalls.get() == 0 && jsBytes.get() == 0L
+
+    companion object {
+        private val requestTrace = ThreadLocal<ViewTrace>()
+
+        fun start(): ViewTrace = ViewTrace().also { requestTrace.set(it) }
+
+        fun end() = requestTrace.remove()
+
+        @JvmStatic
+        fun current(): ViewTrace? = requestTrace.get()
+
+        @JvmStatic
+        fun of(ui: UI): ViewTrace {
+            var trace = ComponentUtil.getData(ui, ViewTrace::class.java)
+
+            if (trace == null) {
+                trace = ViewTrace()
+                ComponentUtil.setData(ui, ViewTrace::class.java, trace)
+            }
+
+            return trace
+        }
+
+        /**
+         * The traces of the current request and UI.
+         */
+        @JvmStatic
+        fun traces(): List<ViewTrace> = listOfNotNull(current(), UI.getCurrent()?.let { of(it) })
+
+        /**
+         * Counts one remote call and returns the traces where its response bytes must be added.
+         */
+        @JvmStatic
+        fun remoteCall(): List<ViewTrace> = traces().onEach { it.remoteCalls.incrementAndGet() }
+
+        /**
+         * Page.executeJs that counts the bytes of the expression and its (string) parameters.
+         */
+        @JvmStatic
+        fun executeJs(page: Page, expression: String, vararg parameters: Serializable): PendingJavaScriptResult {
+            val bytes = expression.length.toLong() + parameters.sumOf { (it as? String)?.length ?: 0 }
+
+            traces().forEach { it.jsBytes.addAndGet(bytes) }
+
+            return page.executeJs(expression, *parameters)
+        }
+    }
+}
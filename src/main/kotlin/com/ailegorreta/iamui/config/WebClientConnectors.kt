@@ -0,0 +1,96 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  WebClientConnectors.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.iamui.config
+
+import com.ailegorreta.commons.utils.HasLogger
+import org.springframework.beans.factory.DisposableBean
+import org.springframework.core.env.Environment
+import org.springframework.http.client.reactive.ReactorClientHttpConnector
+import org.springframework.stereotype.Component
+import reactor.netty.http.HttpProtocol
+import reactor.netty.http.client.HttpClient
+import reactor.netty.resources.ConnectionProvider
+import java.time.Duration
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Reactor Netty connectors of the WebClients, one connection pool per backend (iam, cache and audit),
+ * so a burst of grid scrolling to the iam-service does not take the connections of the other backends.
+ *
+ * Every pool is configured in microservice.<backend>.pool (see application.yml):
+ *
+ * - max-connections and pending-acquire-max-count: the size of the pool and of its waiting queue.
+ * - pending-acquire-timeout-millis: how long a request waits for a connection.
+ * - max-idle-time-seconds and max-life-time-seconds: idle (and old) connections are evicted in background,
+ *   before the gateway closes them.
+ * - http2: HTTP/2 (h2 with https, h2c with http) with HTTP/1.1 as fallback.
+ * - compress: accept gzip responses.
+ *
+ * The pools metrics are exported as reactor.netty.connection.provider.* tagged by the pool name.
+ *
+ * @project iam-ui
+ * @author rlh
+ * @date: September 2023
+ */
+@Component
+class WebClientConnectors(private val environment: Environment): DisposableBean, HasLogger {
+
+    private val providers = ConcurrentHashMap<String, ConnectionProvider>()
+    private val connectors = ConcurrentHashMap<String, ReactorClientHttpConnector>()
+
+    fun connector(backend: String): ReactorClientHttpConnector = connectors.computeIfAbsent(backend) {
+        val pool = "microservice.$backend.pool"
+        val provider = providers.computeIfAbsent(backend) {
+            ConnectionProvider.builder(backend)
+                              .maxConnections(property("$pool.max-connections", 50))
+                              .pendingAcquireMaxCount(property("$pool.pending-acquire-max-count", 500))
+                              .pendingAcquireTimeout(Duration.ofMillis(property("$pool.pending-acquire-timeout-millis", 10_000).toLong()))
+                              .maxIdleTime(Duration.ofSeconds(property("$pool.max-idle-time-seconds", 30).toLong()))
+                              .maxLifeTime(Duration.ofSeconds(property("$pool.max-life-time-seconds", 300).toLong()))
+                              .evictInBackground(Duration.ofSeconds(property("$pool.evict-seconds", 30).toLong()))
+                              .metrics(true)
+                              .build()
+        }
+        val http2 = property("$pool.http2", false)
+        var httpClient = HttpClient.create(provider)
+                                   .keepAlive(true)
+                                   .compress(property("$pool.compress", true))
+
+        if (http2)
+            httpClient = httpClient.protocol(HttpProtocol.HTTP11,
+                                             if (environment.getProperty("microservice.$backend.provider-uri", "").startsWith("https"))
+                                                 HttpProtocol.H2
+                                             else
+                                                 HttpProtocol.H2C)
+        logger.info("Pool de conexiones para $backend: ${property("$pool.max-connections", 50)} conexiones, http2=$http2")
+
+        ReactorClientHttpConnector(httpClient)
+    }
+
+    private inline fun <reified T : Any> property(key: String, default: T): T =
+        environment.getProperty(key, T::class.javaObjectType, default)
+
+    override fun destroy() {
+        providers.values.forEach { it.dispose() }
+    }
+}
@@ -33,6 +33,7 @@ import com.vaadin.flow.spring.annotation.SpringComponent
 import com.vaadin.flow.spring.annotation.UIScope
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.data.domain.Page
+import org.springframework.data.domain.PageImpl
 import org.springframework.data.domain.Pageable
 import org.springframework.data.domain.Sort
 import java.io.Serializable
@@ -97,7 +98,7 @@ class CompaniasGridDataProvider: FilterablePageableHierarchicalDataProvider<Comp
     }
 
     override fun hasChildren(companiaDTO: CompaniaDTO): Boolean {
-        return companiaDTO.areas.isNotEmpty()
+        return companiaDTO.hasAreas()
     }
 
     override fun getChildCount(query: HierarchicalQuery<CompaniaDTO, CompaniaFilter>): Int {
@@ -109,7 +110,7 @@ class CompaniasGridDataProvider: FilterablePageableHierarchicalDataProvider<Comp
 
             return count.toInt()
         } else
-            return filterQuery.parent.areas.size
+            return filterQuery.parent.areasCount()
     }
 
     override fun fetchChildrenFromBackEnd(query: HierarchicalQuery<CompaniaDTO, CompaniaFilter>): Stream<CompaniaDTO> {
@@ -120,15 +121,21 @@ class CompaniasGridDataProvider: FilterablePageableHierarchicalDataProvider<Comp
             val result: Page<CompaniaDTO> = fetchFromBackEnd(filterQuery, pageable)
 
             return fromPageable(result, pageable, filterQuery)
-        } else {
+        } else if (filterQuery.parent.areas.isNotEmpty()) {
             /* no need to go to backend the children are in companiaDTO.fondos just convert them */
-            var fondos = ArrayList<CompaniaDTO>()
-
-            query.parent.areas.forEach { fondos.add(CompaniaDTO.fromEntity(it)) }
+            return CompaniaDTO.fromAreas(query.parent.areas).stream()
+        } else {
+            /* lazy areas: read just the page of areas that the TreeGrid shows */
+            val pageable = getPageable(filterQuery)
+            val areas = service.findAreas(filterQuery.parent, pageable)
+            val result: Page<CompaniaDTO> = PageImpl(CompaniaDTO.fromAreas(areas), pageable,
+                                                     filterQuery.parent.numAreas.toLong())
 
-            return fondos.stream()
+            return fromPageable(result, pageable, filterQuery)
         }
     }
+
+    fun areasOf(compania: CompaniaDTO) = service.areasOf(compania)
 }
 
 data class CompaniaFilter constructor (val filter: String = "", val negocio: Negocio = Negocio.TODOS): Serializable {
@@ -0,0 +1,167 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  FilterPipeline.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.iamui.ui.dataproviders
+
+import com.ailegorreta.commons.utils.HasLogger
+import com.vaadin.flow.component.UI
+import com.vaadin.flow.component.UIDetachedException
+import io.micrometer.core.instrument.Metrics
+import org.springframework.security.core.context.SecurityContextHolder
+import org.springframework.web.context.request.RequestContextHolder
+import reactor.core.Disposable
+import reactor.core.publisher.Mono
+import java.time.Duration
+import java.util.function.Consumer
+import java.util.function.Function
+
+/**
+ * Filtering pipeline for the grids whose filter is typed by the user. Every key stroke is
+ * a new filter, so instead of setting it in the data provider (i.e., a page and a count request
+ * to the iam-service each one) the filters are:
+ *
+ * - Debounced: the query of a filter starts when no other filter is typed during 'debounce'.
+ * - Cancelled: a new filter disposes the query of the previous one, even if it is in flight.
+ * - Coalesced: a filter equal to the pending or to the applied one is ignored.
+ *
+ * The query reads the count and the first page of the filter into the caches (see
+ * PageReadAhead.prefetchFirstPage), so both are cancelled by a new filter and when the filter is
+ * applied the grid does not wait for them.
+ *
+ * The query is subscribed and the filter applied under ui.access, with the push of the UI. The
+ * OAuth2 WebClient needs the HTTP request and the shared caches need the authorities of the user
+ * (see SingleFlight.scope), so the security context and the request attributes of the request
+ * that submitted the filter are set while the access runs (see RequestContext).
+ *
+ * The outcome of the filters is counted in the 'iam.ui.filter.queries' metric.
+ *
+ * @author rlh
+ * @project : iam-ui
+ * @date September 2023
+ */
+class FilterPipeline<F>(private val name: String,
+                        private val debounce: Duration,
+                        private val query: Function<F, Mono<*>>,
+                        private val apply: Consumer<F>) : HasLogger {
+
+    private var applied: F? = null
+    private var pending: F? = null
+    private var inFlight: Disposable? = null
+
+    /**
+     * Must be called in the request thread (i.e., with the UI locked).
+     */
+    fun submit(filter: F) {
+        if (filter == pending || (pending == null && filter == applied)) {
+            queries(COALESCED).increment()
+            return
+        }
+        cancel()
+        if (filter == applied) return       // the user typed back the applied filter
+
+        val ui = UI.getCurrent()
+        val context = RequestContext()
+
+        pending = filter
+        inFlight = Mono.delay(debounce)
+                       .doOnCancel { queries(DEBOUNCED).increment() }
+                       .subscribe { access(ui, context, filter) { query(ui, context, filter) } }
+    }
+
+    /*
+     * Under ui.access, so the query is subscribed with the request and the security context of
+     * the user.
+     */
+    private fun query(ui: UI, context: RequestContext, filter: F) {
+        inFlight = Mono.defer { query.apply(filter).then() }
+                       .doOnSubscribe { queries(ISSUED).increment() }
+                       .doOnCancel { queries(CANCELLED).increment() }
+                       .onErrorResume {
+                            logger.error("Error al consultar el filtro $filter", it)
+                            Mono.empty()
+                       }
+                       .subscribe(null, null) {
+                            access(ui, context, filter) {
+                                pending = null
+                                applied = filter
+                                apply.accept(filter)
+                            }
+                       }
+    }
+
+    /*
+     * The command runs in this thread when the session is not locked, and then the grid reads
+     * its page and count while the changes are pushed, at the end of ui.access. If it is locked
+     * the command runs in the thread of the request that holds the lock.
+     */
+    private fun access(ui: UI, context: RequestContext, filter: F, command: () -> Unit) {
+        context.within {
+            try {
+                ui.access { if (pending == filter) command() }
+            } catch (e: UIDetachedException) {
+                logger.debug("La vista fue cerrada antes de aplicar el filtro")
+            }
+        }
+    }
+
+    fun cancel() {
+        if (inFlight != null && !inFlight!!.isDisposed)
+            inFlight!!.dispose()
+        inFlight = null
+        pending = null
+    }
+
+    private fun queries(outcome: String) = Metrics.counter("iam.ui.filter.queries",
+                                                           "provider", name,
+                                                           "outcome", outcome)
+
+    /**
+     * Security context and request attributes of the request thread that creates it. The request
+     * is just read by the OAuth2 authorized client manager to find the authorized client of the
+     * authenticated user, so it can be used once the request is finished.
+     */
+    private class RequestContext {
+        private val security = SecurityContextHolder.getContext()
+        private val request = RequestContextHolder.getRequestAttributes()
+
+        fun within(command: () -> Unit) {
+            val previousSecurity = SecurityContextHolder.getContext()
+            val previousRequest = RequestContextHolder.getRequestAttributes()
+
+            SecurityContextHolder.setContext(security)
+            RequestContextHolder.setRequestAttributes(request)
+            try {
+                command()
+            } finally {
+                SecurityContextHolder.setContext(previousSecurity)
+                RequestContextHolder.setRequestAttributes(previousRequest)
+            }
+        }
+    }
+
+    companion object {
+        const val ISSUED = "issued"
+        const val CANCELLED = "cancelled"
+        const val DEBOUNCED = "debounced"
+        const val COALESCED = "coalesced"
+    }
+}
@@ -0,0 +1,48 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  GridItemCount.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+@file:JvmName("GridItemCount")
+package com.ailegorreta.iamui.ui.dataproviders
+
+import com.ailegorreta.iamui.config.ServiceConfig
+import com.vaadin.flow.component.grid.Grid
+
+const val COUNT_EXACT = "exact"
+const val COUNT_ESTIMATED = "estimated"
+const val COUNT_UNDEFINED = "undefined"
+
+/**
+ * Sets how a grid of a pageable data provider knows its number of rows. With 'exact' the grid
+ * asks sizeInBackEnd (i.e., the count of the filter). With 'estimated' or 'undefined' it never
+ * waits for the count: the grid grows while the user scrolls until a page comes incomplete.
+ *
+ * @author rlh
+ * @project : iam-ui
+ * @date September 2023
+ */
+fun setItemCount(grid: Grid<*>, serviceConfig: ServiceConfig) {
+    when (serviceConfig.gridCountMode) {
+        COUNT_ESTIMATED -> grid.lazyDataView.setItemCountEstimate(serviceConfig.gridCountEstimate)
+        COUNT_UNDEFINED -> grid.lazyDataView.setItemCountUnknown()
+        else -> {}      // COUNT_EXACT
+    }
+}
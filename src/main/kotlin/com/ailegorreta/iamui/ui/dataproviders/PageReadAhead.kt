@@ -0,0 +1,182 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  PageReadAhead.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.iamui.ui.dataproviders
+
+import com.ailegorreta.commons.utils.HasLogger
+import com.ailegorreta.iamui.backend.data.service.ClientWebController
+import com.ailegorreta.iamui.backend.data.service.EntityCache
+import com.ailegorreta.iamui.config.ServiceConfig
+import io.micrometer.core.instrument.Metrics
+import org.springframework.data.domain.Page
+import org.springframework.data.domain.PageImpl
+import org.springframework.data.domain.Pageable
+import reactor.core.publisher.Mono
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.function.BiFunction
+import java.util.function.Function
+
+/**
+ * Read-ahead of the pages of a pageable data provider. When page N is served, page N+1 is
+ * requested in background, so a user that scrolls the grid linearly does not wait at every page
+ * boundary. If the grid asks for a page that is still in flight, it waits for it instead of
+ * requesting it again.
+ *
+ * The pages are kept in the session EntityCache keyed by the filter, page and sort. So the cache
+ * is bounded and the pages expire with the entities, and the services that save, assign or
+ * un-assign an entity invalidate them with the rest of the entities of its type. A page read
+ * ahead before an invalidation is discarded (see EntityCache.generation), and so is a page
+ * returned by a circuit breaker fallback or served stale (see ClientWebController.fallback): it is
+ * returned to the grid but not cached, so the grid reads the real page as soon as the iam-service
+ * is back.
+ *
+ * The first page of a filter typed by the user is read before the filter is applied (see
+ * prefetchFirstPage and FilterPipeline), so the grid does not wait for it either.
+ *
+ * The grid returns its items to the views that modify them (e.g., with a Binder), so the pages
+ * are returned with a copy of their elements, like the EntityCache look-ups.
+ *
+ * The page reads are counted in the 'iam.ui.page.reads' metric (hit, joined, miss and prefetched).
+ *
+ * @author rlh
+ * @project : iam-ui
+ * @date September 2023
+ */
+class PageReadAhead<T, F>(private val name: String,
+                          private val clazz: Class<T>,
+                          private val serviceConfig: ServiceConfig,
+                          private val copy: Function<T, T>,
+                          private val pages: BiFunction<F, Pageable, Mono<Page<T>>>) : HasLogger {
+
+    data class PageKey(val filter: Any?, val page: Int, val size: Int, val sort: String)
+
+    /* fallback: set when the page is a fallback one */
+    private class Fetch<T>(val page: Mono<Page<T>>, val generation: Long, val fallback: AtomicBoolean) {
+        /* so a prefetch can be joined by the grid */
+        fun cached() = Fetch(page.cache(), generation, fallback)
+    }
+
+    private val inFlight = ConcurrentHashMap<EntityCache.Key, Fetch<T>>()
+
+    /* pageable of the last first page read by the grid, i.e., its page size and sort */
+    private var firstPage: Pageable? = null
+
+    /**
+     * Must be called in the request thread, since the next page is subscribed here.
+     */
+    fun page(filter: F, pageable: Pageable): Page<T> {
+        val entityCache = EntityCache.current(serviceConfig) ?: return pages.apply(filter, pageable).block()!!
+        val key = key(filter, pageable)
+        val cached = entityCache.get(key)
+        val page: Page<T>
+
+        if (pageable.pageNumber == 0)
+            firstPage = pageable
+
+        if (cached != null) {
+            reads(HIT).increment()
+            page = cached as Page<T>
+        } else {
+            val generation = entityCache.generation(clazz)
+            val prefetching = inFlight[key]?.takeIf { it.generation == generation }
+            val fetch = prefetching ?: fetch(filter, pageable, generation)
+
+            reads(if (prefetching != null) JOINED else MISS).increment()
+            page = fetch.page.block()!!
+            if (cacheable(entityCache, fetch))
+                entityCache.put(key, page)
+        }
+        if (serviceConfig.gridReadAhead && page.hasNext())
+            readAhead(entityCache, filter, pageable.next())
+
+        return PageImpl(page.content.map { copy.apply(it) }, page.pageable, page.totalElements)
+    }
+
+    private fun readAhead(entityCache: EntityCache, filter: F, next: Pageable) {
+        val key = key(filter, next)
+        val generation = entityCache.generation(clazz)
+
+        if (entityCache.get(key) != null || inFlight[key]?.generation == generation) return
+
+        val prefetch = fetch(filter, next, generation).cached()
+
+        inFlight[key] = prefetch
+        prefetch.page
+                .doFinally { inFlight.remove(key, prefetch) }
+                .subscribe({
+                               if (cacheable(entityCache, prefetch)) {
+                                   entityCache.put(key, it)
+                                   reads(PREFETCHED).increment()
+                               }
+                           },
+                           { logger.debug("No se pudo leer por adelantado la página ${next.pageNumber} de $name", it) })
+    }
+
+    /**
+     * Reads the first page of the filter into the cache, with the page size and sort of the last
+     * first page read by the grid, so when the filter is applied the grid does not wait for it (see
+     * FilterPipeline). It is not shared with the grid, so disposing the subscription cancels the
+     * read. Empty if the grid has not read a page yet or the page is already cached.
+     *
+     * Must be called in the request thread (i.e., with the UI locked).
+     */
+    fun prefetchFirstPage(filter: F): Mono<Page<T>> {
+        val entityCache = EntityCache.current(serviceConfig) ?: return Mono.empty()
+        val pageable = firstPage ?: return Mono.empty()
+        val key = key(filter, pageable)
+
+        if (entityCache.get(key) != null) return Mono.empty()
+
+        val prefetch = fetch(filter, pageable, entityCache.generation(clazz))
+
+        return prefetch.page.doOnNext {
+            if (cacheable(entityCache, prefetch)) {
+                entityCache.put(key, it)
+                reads(PREFETCHED).increment()
+            }
+        }
+    }
+
+    private fun fetch(filter: F, pageable: Pageable, generation: Long): Fetch<T> {
+        val fallback = AtomicBoolean()
+
+        return Fetch(ClientWebController.withFallbackFlag(pages.apply(filter, pageable), fallback), generation, fallback)
+    }
+
+    private fun cacheable(entityCache: EntityCache, fetch: Fetch<T>) =
+        !fetch.fallback.get() && entityCache.generation(clazz) == fetch.generation
+
+    private fun key(filter: F, pageable: Pageable) =
+        EntityCache.Key(clazz, "page:$name", PageKey(filter, pageable.pageNumber, pageable.pageSize, pageable.sort.toString()))
+
+    private fun reads(outcome: String) = Metrics.counter("iam.ui.page.reads",
+                                                         "provider", name,
+                                                         "outcome", outcome)
+
+    companion object {
+        const val HIT = "hit"
+        const val JOINED = "joined"
+        const val MISS = "miss"
+        const val PREFETCHED = "prefetched"
+    }
+}
@@ -33,7 +33,9 @@ import org.springframework.data.domain.Page
 import org.springframework.data.domain.Pageable
 import org.springframework.data.domain.Sort
 import org.vaadin.artur.spring.dataprovider.FilterablePageableDataProvider
+import reactor.core.publisher.Mono
 import java.io.Serializable
+import java.time.Duration
 import java.util.*
 import java.util.function.Consumer
 
@@ -52,11 +54,15 @@ class PerfilesGridDataProvider: FilterablePageableDataProvider<PerfilDTO, Perfil
 	}
 
 	private val service: PerfilService
+	private val readAhead: PageReadAhead<PerfilDTO, PerfilFilter>
 	private val defaultSortOrders: List<QuerySortOrder>
 	private var pageObserver:Consumer<Page<PerfilDTO>>? = null
+	private var filterPipeline: FilterPipeline<PerfilFilter>? = null
 		
 	constructor(service: PerfilService) {
 		this.service = service
+		readAhead = PageReadAhead("perfiles", PerfilDTO::class.java, service.serviceConfig, { service.copy(it) },
+								  { filter, pageable -> service.findAnyMatchingActivePage(Optional.ofNullable(filter), pageable) })
 		defaultSortOrders = setSortOrders(Sort.Direction.ASC, PERFIL_SORT_FIELDS)
 	}
 
@@ -77,7 +83,7 @@ class PerfilesGridDataProvider: FilterablePageableDataProvider<PerfilDTO, Perfil
 	
 	override fun fetchFromBackEnd(query: Query<PerfilDTO, PerfilFilter>, pageable: Pageable): Page<PerfilDTO> {
 		val filter: PerfilFilter = query.getFilter().orElse(PerfilFilter.emptyFilter)
-		val page:Page<PerfilDTO> = service.findAnyMatchingActive(Optional.ofNullable(filter), pageable)
+		val page:Page<PerfilDTO> = readAhead.page(filter, pageable)
 		
 		if (pageObserver != null)
 			pageObserver!!.accept(page)
@@ -91,6 +97,19 @@ class PerfilesGridDataProvider: FilterablePageableDataProvider<PerfilDTO, Perfil
 		return service.countAnyMatchingActive(Optional.ofNullable(filter)).block()!!.toInt()
 	}
 
+	/**
+	 * Filter typed by the user: it is debounced and its count and first page are read before it is set
+	 * (see FilterPipeline).
+	 */
+	fun submitFilter(filter: PerfilFilter) {
+		if (filterPipeline == null)
+			filterPipeline = FilterPipeline("perfiles",
+											Duration.ofMillis(service.serviceConfig.filterDebounceMillis),
+											{ Mono.`when`(service.countAnyMatchingActive(Optional.of(it)), readAhead.prefetchFirstPage(it)) },
+											{ setFilter(it) })
+		filterPipeline!!.submit(filter)
+	}
+
 	override fun getId(item: PerfilDTO) = item.id
 }
 
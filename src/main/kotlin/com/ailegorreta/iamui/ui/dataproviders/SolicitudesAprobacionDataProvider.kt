@@ -23,39 +23,68 @@
 package com.ailegorreta.iamui.ui.dataproviders
 
 import com.ailegorreta.iamui.backend.data.dto.compania.SolicitudAsignacionDTO
-import com.vaadin.flow.data.provider.hierarchy.AbstractHierarchicalDataProvider
+import com.ailegorreta.iamui.backend.data.service.UsuarioCompaniaService
+import com.ailegorreta.client.dataproviders.FilterablePageableHierarchicalDataProvider
+import com.vaadin.flow.data.provider.QuerySortOrder
 import com.vaadin.flow.data.provider.hierarchy.HierarchicalQuery
+import com.vaadin.flow.spring.annotation.SpringComponent
+import com.vaadin.flow.spring.annotation.UIScope
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.data.domain.Page
+import org.springframework.data.domain.Pageable
 import java.io.Serializable
 import java.util.stream.Stream
 
 /**
- * A hierarchical Data provider in memory for Solicitued Asigacion
+ * A hierarchical pageable Data provider for Solicitudes Asignacion.
+ *
+ * The employees (i.e., the roots) are read from the iam-service one page at a time, as the TreeGrid
+ * scrolls. The requested areas (i.e., the children) come within every employee, so they do not go
+ * to the backend.
  *
  *  @author rlh
  *  @project : iam-ui
- *  @date July 2023
+ *  @date September 2023
  */
-class SolicitudesAprobacionGridDataProvider constructor (val items: Collection<SolicitudAsignacionDTO>):
-                                AbstractHierarchicalDataProvider<SolicitudAsignacionDTO, SolicitudAsignacionFilter>() {
+@SpringComponent
+@UIScope
+class SolicitudesAprobacionGridDataProvider @Autowired constructor (private val service: UsuarioCompaniaService):
+                FilterablePageableHierarchicalDataProvider<SolicitudAsignacionDTO, SolicitudAsignacionFilter>() {
+
+    override fun getDefaultSortOrders(): List<QuerySortOrder> = emptyList()
 
-    override fun isInMemory() = true
+    override fun fetchFromBackEnd(query: HierarchicalQuery<SolicitudAsignacionDTO, SolicitudAsignacionFilter>,
+                                  pageable: Pageable): Page<SolicitudAsignacionDTO> =
+        service.findSolicitudesAsignacion(pageable)
+
+    override fun getId(item: SolicitudAsignacionDTO): String {
+        return "${item.nombreUsuario}:${item.idArea ?: ""}"
+    }
 
     override fun hasChildren(solicitudAsignacionDTO: SolicitudAsignacionDTO): Boolean {
         return solicitudAsignacionDTO.areas.size > 0
     }
 
     override fun getChildCount(query: HierarchicalQuery<SolicitudAsignacionDTO, SolicitudAsignacionFilter>): Int {
-        if (query.parent == null)
-            return items.size
+        val filterQuery = super.getFilterQuery(query)
+
+        if (filterQuery.parent == null)
+            return service.countSolicitudesAsignacion().block()!!.toInt()
         else
-            return query.parent.areas.size
+            return filterQuery.parent.areas.size
     }
 
-    override fun fetchChildren(query: HierarchicalQuery<SolicitudAsignacionDTO, SolicitudAsignacionFilter>): Stream<SolicitudAsignacionDTO> {
-        if (query.parent == null)
-            return items.stream()
-        else
-            return query.parent.areas.stream()
+    override fun fetchChildrenFromBackEnd(query: HierarchicalQuery<SolicitudAsignacionDTO, SolicitudAsignacionFilter>): Stream<SolicitudAsignacionDTO> {
+        val filterQuery = super.getFilterQuery(query)
+
+        if (filterQuery.parent == null) {
+            val pageable = getPageable(filterQuery)
+            val result: Page<SolicitudAsignacionDTO> = fetchFromBackEnd(filterQuery, pageable)
+
+            return fromPageable(result, pageable, filterQuery)
+        } else
+            /* no need to go to backend the areas are in the employee */
+            return filterQuery.parent.areas.stream()
     }
 }
 
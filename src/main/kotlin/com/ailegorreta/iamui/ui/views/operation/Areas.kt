@@ -99,7 +99,7 @@ class Areas : ViewFrame {
     }
 
     class Content(val usuarioCompaniaService: UsuarioCompaniaService,
-                  dataProvider: CompaniasGridDataProvider
+                  val dataProvider: CompaniasGridDataProvider
     ) : KComposite() {
         private var draggedItems: List<UsuarioDTO> = ArrayList()
         private var selectedOperadora: CompaniaDTO? = null
@@ -290,7 +290,7 @@ class Areas : ViewFrame {
         }
 
         override fun dialogResponseOk(dialog: SimpleDialog?) {
-            companiaDTO.areas.forEach {
+            caller.dataProvider.areasOf(companiaDTO).forEach {
                 caller.assignOneArea(usuarioDTO, it.idArea)
             }
         }
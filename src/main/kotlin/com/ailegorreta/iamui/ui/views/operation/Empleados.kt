@@ -123,7 +123,7 @@ class Empleados(securityService: CurrentSession,
                   val graph: Graph, val mapper: ObjectMapper ) : KComposite() {
 
         private var node: Node? = null
-        var graphAdministrador: GraphAdministrador? = null
+        @Volatile var graphAdministrador: GraphAdministrador? = null
         private lateinit var showEmployeesProfiles: Button
         private lateinit var showEmployeesExtraPermits: Button
         private lateinit var showEmployeesForbidPermits: Button
@@ -185,14 +185,11 @@ class Empleados(securityService: CurrentSession,
         }
 
         fun initGraph() {
-            val data = service.graphCompaniasByAdministrador(securityService.authenticatedUser.get().name).block()
-
-            try {
-                graphAdministrador = mapper.readValue(data, GraphAdministrador::class.java)
-                graph.startGraph(CompaniasGrafo(data!!))
-            } catch (e: IOException) {
-                UIUtils.showNotification("Error NO se pudo leer los datos de la gráfica")
-            }
+            graph.startGraph(service.graphCompaniasByAdministrador(securityService.authenticatedUser.get().name)
+                                    .map {
+                                        graphAdministrador = mapper.readValue(it, GraphAdministrador::class.java)
+                                        CompaniasGrafo(it)
+                                    })
         }
 
         private fun setButton(itemSelected : Int): Node {
@@ -231,7 +228,9 @@ class Empleados(securityService: CurrentSession,
     */
     data class GraphAdministrador(val nodes: List<Node>,
                                   val edges: List<Link>) {
-        fun getNode(id: Int) = nodes.asSequence().filter{it.id == id}.first()
+        private val nodesById: Map<Int, Node> by lazy { nodes.associateBy { it.id } }
+
+        fun getNode(id: Int) = nodesById[id] ?: throw NoSuchElementException("No existe el nodo $id")
 
         override fun toString() = "nodes:" + nodes.size + " edges:" + edges.size
     }
@@ -382,9 +381,9 @@ class EmpleadosPerfiles(private val usuarioService: UsuarioService,
                     setPlaceHolder("Búsqueda")
                     addFilterChangeListener{
                         if (this@searchBar.filter.isNotEmpty() || this@searchBar.isCheckboxChecked)
-                            dataProvider.setFilter( PerfilFilter(this@searchBar.filter, this@searchBar.isCheckboxChecked))
+                            dataProvider.submitFilter( PerfilFilter(this@searchBar.filter, this@searchBar.isCheckboxChecked))
                         else
-                            dataProvider.setFilter(PerfilFilter.emptyFilter)
+                            dataProvider.submitFilter(PerfilFilter.emptyFilter)
                     }
                     actionButton.isVisible = false
                 }
@@ -622,9 +621,9 @@ class EmpleadosFacultades(private val securityService: CurrentSession,
                     setPlaceHolder("Búsqueda")
                     addFilterChangeListener{
                         if (this@searchBar.filter.isNotEmpty() || this@searchBar.isCheckboxChecked)
-                            dataProvider.setFilter( FacultadFilter(this@searchBar.filter, this@searchBar.isCheckboxChecked))
+                            dataProvider.submitFilter( FacultadFilter(this@searchBar.filter, this@searchBar.isCheckboxChecked))
                         else
-                            dataProvider.setFilter(FacultadFilter.getEmptyFilter())
+                            dataProvider.submitFilter(FacultadFilter.getEmptyFilter())
                     }
                     actionButton.isVisible = false
                 }
@@ -947,25 +946,23 @@ class EmpleadosForbidFacultades(private val securityService: CurrentSession,
 
             sourceItems.removeAll(draggedItems!!)
             dragSource!!.setItems(sourceItems)
-            draggedItems!!.forEach{
-                if (dragSource == gridFacultades) { // it is new forbidden permit
-                    selectedUsuario!!.fechaModificacion = LocalDateTime.now()
-                    selectedUsuario!!.usuarioModificacion = securityService.authenticatedUser.get().name
+            val usuario = selectedUsuario!!
+            val nombres = draggedItems!!.joinToString { it.nombre }
 
-                    val result = service.forbidFacultad(AssignToUserDTO(it.nombre, selectedUsuario!!)).block()
+            usuario.fechaModificacion = LocalDateTime.now()
+            usuario.usuarioModificacion = securityService.authenticatedUser.get().name
 
-                    UIUtils.showNotification("Se le bloqueo la facultad:${it.nombre} al usuario:${selectedUsuario!!.nombreUsuario}")
-                    selectedUsuario!!.sinFacultades = result!!.usuarioDTO.sinFacultades // update grid
-                } else { // unforbid the permit
-                    selectedUsuario!!.fechaModificacion = LocalDateTime.now()
-                    selectedUsuario!!.usuarioModificacion = securityService.authenticatedUser.get().name
+            val assigns = draggedItems!!.map { AssignToUserDTO(it.nombre, usuario) }
 
-                    val result = service.unForbidFacultad(AssignToUserDTO(it.nombre, selectedUsuario!!)).block()
-
-                    UIUtils.showNotification("Se le desbloqueo la facultad:${it.nombre} al usuario:${selectedUsuario!!.nombreUsuario}")
-                    selectedUsuario!!.sinFacultades = result!!.usuarioDTO.sinFacultades // update grid
-                }
+            if (dragSource == gridFacultades) { // they are new forbidden permits
+                service.forbidFacultades(assigns).block()
+                UIUtils.showNotification("Se le bloqueo la(s) facultad(es):$nombres al usuario:${usuario.nombreUsuario}")
+            } else { // unforbid the permits
+                service.unForbidFacultades(assigns).block()
+                UIUtils.showNotification("Se le desbloqueo la(s) facultad(es):$nombres al usuario:${usuario.nombreUsuario}")
             }
+            // the requests were concurrent, so none of their results has all the changes: read the user once
+            usuario.sinFacultades = service.findById(usuario.id!!).block()!!.sinFacultades  // update grid
 
             // Add dragged items to the target Grid
             val targetGrid = it.source
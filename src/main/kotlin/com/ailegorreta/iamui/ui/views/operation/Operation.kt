@@ -116,7 +116,7 @@ class  Operation(private val securityService: CurrentSession,
     private var detailsDrawerHeader: DetailsDrawerHeader? = null
     private var saveButton: Button? = null
     private var currentDetailController: DetailController? = null
-    var graphAdministrador: GraphAdministrador? = null
+    @Volatile var graphAdministrador: GraphAdministrador? = null
 
     init {
         setViewContent(Content(securityService, this, graph), graph)
@@ -144,20 +144,19 @@ class  Operation(private val securityService: CurrentSession,
         // ^note: Master administrator has access to ALL corporate Groups.
         //        The 'no master' Administrator as access only to his(her) group
 
-        try {
-            graphAdministrador = mapper.readValue(data.block(), GraphAdministrador::class.java)
-            graph.startGraph(AdministradorGrafo(graphAdministrador!!.filteredData(mapper, graphFilter)))
-        } catch (e: IOException) {
-            UIUtils.showNotification("Error NO se pudo leer los datos de la gráfica")
-        }
+        graph.startGraph(data.map {
+            graphAdministrador = mapper.readValue(it, GraphAdministrador::class.java)
+            AdministradorGrafo(graphAdministrador!!.filteredData(mapper, graphFilter))
+        })
     }
 
     /**
      * The filter for the graph has been changed. We update the display of the Graph
      */
     fun updateGraphFilter() {
+        val graphAdministrador = graphAdministrador ?: return      // the graph has not been read yet
 
-        graph.startGraph(AdministradorGrafo(graphAdministrador!!.filteredData(mapper, graphFilter)))
+        graph.startGraph(AdministradorGrafo(graphAdministrador.filteredData(mapper, graphFilter)))
         graph.updateGraph()
     }
 
@@ -430,6 +429,27 @@ class  Operation(private val securityService: CurrentSession,
         val validGroups: List<String>
         var filteredNodes: List<Node> = ArrayList()
 
+        /*
+         * Indexes of the graph, so the filter is linear in the size of the result and not
+         * in nodes x edges, and the node look-up is O(1):
+         *  - nodesById: node look-up by the id that use the graph.js.
+         *  - edgesBySource: adjacency list of the outgoing edges of each node.
+         *  - trigrams: the usuarios that contain each three letters string in their caption.
+         */
+        private val nodesById: Map<Int, Node> by lazy { nodes.associateBy { it.id } }
+        private val edgesBySource: Map<Int, List<Link>> by lazy { edges.groupBy { it.source } }
+        private val usuarios: List<Node> by lazy { nodes.filter { it.type == "usuario" } }
+        private val trigrams: Map<String, List<Node>> by lazy {
+            val index = HashMap<String, MutableList<Node>>()
+
+            usuarios.forEach { usuario ->
+                usuario.caption.windowed(TRIGRAM).toSet().forEach { index.getOrPut(it) { ArrayList() }.add(usuario) }
+            }
+            index
+        }
+        private var lastFilter = ""
+        private var lastUsuarios: List<Node> = ArrayList()
+
         data class Filtered(val nodes: List<Node>,
                             val edges: List<Link>)
 
@@ -444,48 +464,58 @@ class  Operation(private val securityService: CurrentSession,
                                .toList()
         }
 
-        fun getNode(id: Int) = nodes.asSequence().filter{it.id == id}.first()
+        fun getNode(id: Int) = nodesById[id] ?: throw NoSuchElementException("No existe el nodo $id")
 
         /**
          * Do graph filtering by nombre Usuario
          */
+        @Synchronized
         fun filteredData(mapper: ObjectMapper, filter: String): String {
             if (filter.isEmpty())       // no filter in needed
                 return mapper.writeValueAsString(Filtered(nodes, edges))
 
             // 1st filter the nodes
+            val visibleUsuarios = filterUsuarios(filter)
+            val visible = BitSet()
+
             filteredNodes = nodes.asSequence()
-                                 .filter { (it.type != "usuario") ||
-                                           (it.type == "usuario" && it.caption.contains(filter)) }
+                                 .filter { it.type != "usuario" }
+                                 .plus(visibleUsuarios)
                                  .toList()
-            // 2nd once the nodes are filter we erase unnecessary edges
-            val filteredEdges = edges.asSequence()
-                                     .filter { validLink(it) }
-                                     .toList()
+            filteredNodes.forEach { visible.set(it.id) }
+            // 2nd once the nodes are filter we keep just the edges between visible nodes
+            val filteredEdges = filteredNodes.asSequence()
+                                             .flatMap { edgesBySource[it.id] ?: emptyList() }
+                                             .filter { visible.get(it.target) }
+                                             .toList()
 
             return mapper.writeValueAsString(Filtered(filteredNodes, filteredEdges))
         }
 
         /*
-         * Check if the link has a reference to a filtered node.
+         * Candidates are the usuarios that matched the previous filter if the user just typed more
+         * letters, or the usuarios that have the less common trigram of the filter.
          */
-        private fun validLink(edge: Link): Boolean {
-            var found = false
+        private fun filterUsuarios(filter: String): List<Node> {
+            var candidates = if (lastFilter.isNotEmpty() && filter.contains(lastFilter)) lastUsuarios else usuarios
 
-            for (node in filteredNodes)
-                if (node.id == edge.source) {
-                    found = true
-                    break
-                }
-            if (!found) return false
-            for (node in filteredNodes)
-                if (node.id == edge.target)
-                    return true
+            if (filter.length >= TRIGRAM) {
+                val rarest = filter.windowed(TRIGRAM).minBy { trigrams[it]?.size ?: 0 }
+                val byTrigram = trigrams[rarest] ?: emptyList()
 
-            return false
+                if (byTrigram.size < candidates.size) candidates = byTrigram
+            }
+            lastUsuarios = candidates.filter { it.caption.contains(filter) }
+            lastFilter = filter
+
+            return lastUsuarios
         }
 
         override fun toString() = "nodes:" + nodes.size + " edges:" + edges.size
+
+        companion object {
+            const val TRIGRAM = 3
+        }
     }
 
     /**
@@ -563,12 +593,7 @@ class  Operation(private val securityService: CurrentSession,
                     label("Compañias permitidas") { }
                     twinColSelect(unSelCompanies(permiteCompanias), permiteCompanias) {
                         addSelectionListener {
-                            val companiasPermitidas = ArrayList<CompaniaDTO>()
-
-                            it.value.forEach {
-                                companiasPermitidas.add(companiaService.findByName(it).block()!!)
-                            }
-                            binder.bean.permiteCompanias = companiasPermitidas
+                            binder.bean.permiteCompanias = companiaService.findByNames(it.value)
                             saveButton.isEnabled = true
                         }
                     }
@@ -577,12 +602,7 @@ class  Operation(private val securityService: CurrentSession,
                     label("Compañias no permitidas") { }
                     twinColSelect(unSelCompanies(noPermiteCompanias), noPermiteCompanias) {
                         addSelectionListener {
-                            val companiasNoPermitidas = ArrayList<CompaniaDTO>()
-
-                            it.value.forEach {
-                                companiasNoPermitidas.add(companiaService.findByName(it).block()!!)
-                            }
-                            binder.bean.noPermiteCompanias = companiasNoPermitidas
+                            binder.bean.noPermiteCompanias = companiaService.findByNames(it.value)
                             saveButton.isEnabled = true
                         }
                     }
@@ -592,12 +612,7 @@ class  Operation(private val securityService: CurrentSession,
                     span("Compañias permitidas sin sus filiales") {}
                     twinColSelect(unSelCompanies(permiteSinHerencia), permiteSinHerencia) {
                         addSelectionListener {
-                            val companiasSinHerencia = ArrayList<CompaniaDTO>()
-
-                            it.value.forEach {
-                                companiasSinHerencia.add(companiaService.findByName(it).block()!!)
-                            }
-                            binder.bean.permiteSinHerencia = companiasSinHerencia
+                            binder.bean.permiteSinHerencia = companiaService.findByNames(it.value)
                             saveButton.isEnabled = true
                         }
                     }
@@ -783,12 +798,7 @@ class  Operation(private val securityService: CurrentSession,
                     span("Grupos en los que es miembro el Administrador") {}
                     gruposTwinColSelect = twinColSelect(unSelGroups(originalGroups), originalGroups) {
                         addSelectionListener {
-                            val miembroGrupos = ArrayList<GrupoDTO>()
-
-                            it.value.forEach {
-                                miembroGrupos.add(grupoService.findById(it.substring(0, it.indexOf(":")).toLong()).block()!!)
-                            }
-                            binder.bean.grupos = miembroGrupos
+                            binder.bean.grupos = ArrayList(grupoService.findByIds(it.value.map { grupo -> grupo.substring(0, grupo.indexOf(":")).toLong() }))
                             saveButton.isEnabled = true
                         }
                     }
@@ -803,12 +813,7 @@ class  Operation(private val securityService: CurrentSession,
                     span("Compañias en las que trabaja (se requiere una compañía)") {}
                     companiasTwinColSelect = twinColSelect(unSelCompanies(originalCompanies), originalCompanies) {
                         addSelectionListener {
-                            val trabajaCompanias = ArrayList<CompaniaDTO>()
-
-                            it.value.forEach {
-                                trabajaCompanias.add(companiaService.findByName(it).block()!!)
-                            }
-                            binder.bean.companias = trabajaCompanias
+                            binder.bean.companias = ArrayList(companiaService.findByNames(it.value))
                             saveButton.isEnabled = true
                         }
                     }
@@ -909,6 +914,7 @@ class  Operation(private val securityService: CurrentSession,
 
                     if (errors.isEmpty()) {
                         service.saveUsuario(binder.bean).block()
+                        companiaService.invalidateCatalog(binder.bean.companias)
                         return true
                     } else
                         Notification.show(errors.joinToString("; ") { it }, 3000, Notification.Position.BOTTOM_START)
@@ -1023,12 +1029,7 @@ class  Operation(private val securityService: CurrentSession,
                 span("Compañias en las que trabaja (se requiere una compañía)") {}
                 twinColSelect(unSelCompanies(companias), companias) {
                     addSelectionListener {
-                        val trabajaCompanias = ArrayList<CompaniaDTO>()
-
-                        it.value.forEach {
-                            trabajaCompanias.add(companiaService.findByName(it).block()!!)
-                        }
-                        binder.bean.companias = trabajaCompanias
+                        binder.bean.companias = ArrayList(companiaService.findByNames(it.value))
                         saveButton.isEnabled = true
                     }
                 }
@@ -1089,6 +1090,7 @@ class  Operation(private val securityService: CurrentSession,
 
                     if (errors.isEmpty()) {
                         service.saveUsuario(binder.bean).block()
+                        companiaService.invalidateCatalog(binder.bean.companias)
                         return true
                     } else
                         Notification.show(errors.joinToString("; ") { it }, 3000, Notification.Position.BOTTOM_START)
@@ -35,6 +35,7 @@ import com.ailegorreta.iamui.ui.MainLayout
 import com.ailegorreta.iamui.ui.dataproviders.SolicitudesAprobacionGridDataProvider
 import com.ailegorreta.iamui.ui.views.ViewFrame
 import com.vaadin.flow.component.AttachEvent
+import com.vaadin.flow.component.button.ButtonVariant
 import com.vaadin.flow.component.grid.ColumnTextAlign
 import com.vaadin.flow.component.grid.Grid
 import com.vaadin.flow.component.icon.Icon
@@ -59,13 +60,13 @@ import jakarta.annotation.security.RolesAllowed
 @PageTitle("Aprobacion de asignaciones")
 @Route(value = "solasignacion", layout = MainLayout::class)
 @RolesAllowed(Role.USER_IAM, Role.ADMIN_IAM, Role.ALL)
-class SolicitudesAsignacion(usuarioCompaniaService: UsuarioCompaniaService) : ViewFrame() {
+class SolicitudesAsignacion(usuarioCompaniaService: UsuarioCompaniaService,
+                            dataProvider: SolicitudesAprobacionGridDataProvider) : ViewFrame() {
 
     private val service: UsuarioCompaniaService = usuarioCompaniaService
-    private val dataProvider: SolicitudesAprobacionGridDataProvider
+    private val dataProvider: SolicitudesAprobacionGridDataProvider = dataProvider
 
     init {
-        dataProvider = SolicitudesAprobacionGridDataProvider(usuarioCompaniaService.findSolicitudesAsignacion())
         setViewContent(Content(service, dataProvider ))
     }
 
@@ -86,10 +87,21 @@ class SolicitudesAsignacion(usuarioCompaniaService: UsuarioCompaniaService) : Vi
                 setPadding(Horizontal.RESPONSIVE_X, Top.RESPONSIVE_X)
                 verticalLayout {
                     isPadding = false; content { align(stretch, top) }
-                    label("SOLICITUD DE APROBACION DE ASIGNACIONES:")
+                    horizontalLayout {
+                        content { align(left, middle) }
+                        label("SOLICITUD DE APROBACION DE ASIGNACIONES:")
+                        button("Aprobar seleccionadas") {
+                            addThemeVariants(ButtonVariant.LUMO_PRIMARY, ButtonVariant.LUMO_SMALL)
+                            onLeftClick { approveSelected(true) }
+                        }
+                        button("Rechazar seleccionadas") {
+                            addThemeVariants(ButtonVariant.LUMO_ERROR, ButtonVariant.LUMO_SMALL)
+                            onLeftClick { approveSelected(false) }
+                        }
+                    }
                     grid = treeGrid(dataProvider = dataProvider) {
                         setId("usuarios")
-                        setSelectionMode(Grid.SelectionMode.SINGLE)
+                        setSelectionMode(Grid.SelectionMode.MULTI)
                         addHierarchyColumn(SolicitudAsignacionDTO::nombre).setHeader("Nombre")
                         addColumn(ComponentRenderer<Icon, SolicitudAsignacionDTO>({ agente -> createActive(agente.activo) })).apply {
                             setAutoWidth(true)
@@ -107,6 +119,25 @@ class SolicitudesAsignacion(usuarioCompaniaService: UsuarioCompaniaService) : Vi
             }
         }
 
+        /*
+         * Selecting an employee selects all its requested areas. All the solicitudes are sent
+         * in one batch and the grid is refreshed once.
+         */
+        private fun approveSelected(approve: Boolean) {
+            val solicitudes = grid.selectedItems.flatMap { if (it.idArea != null) listOf(it) else it.areas }
+                                                .distinct()
+
+            if (solicitudes.isEmpty()) {
+                UIUtils.showNotification("Se requiere seleccionar al menos una solicitud")
+                return
+            }
+            service.approveSolicitudesAsignacion(solicitudes, approve).block()
+            grid.deselectAll()
+            dataProvider.refreshAll()
+            UIUtils.showNotification((if (approve) "Se aprobaron " else "Se rechazaron ") +
+                                     "${solicitudes.size} solicitudes de asignación")
+        }
+
         private fun createActive(isActivo: Boolean?): Icon =
                 if (isActivo == null)
                     UIUtils.createPrimaryIcon(VaadinIcon.ELLIPSIS_DOTS_H)
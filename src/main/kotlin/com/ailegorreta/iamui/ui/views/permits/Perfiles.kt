@@ -50,6 +50,7 @@ import com.ailegorreta.iamui.ui.dataproviders.PerfilFilter
 import com.ailegorreta.iamui.ui.dataproviders.PerfilesGridDataProvider
 import com.ailegorreta.iamui.ui.dataproviders.RolFilter
 import com.ailegorreta.iamui.ui.dataproviders.RolesGridDataProvider
+import com.ailegorreta.iamui.ui.dataproviders.setItemCount
 import com.ailegorreta.iamui.ui.exceptions.DeleteValidationException
 import com.ailegorreta.iamui.ui.exceptions.SaveValidationException
 import com.ailegorreta.iamui.ui.views.SplitViewFrame
@@ -233,9 +234,9 @@ class Perfiles: SplitViewFrame, SimpleDialog.Caller {
 								setPlaceHolder("Búsqueda")
 								addFilterChangeListener{  
 									if (!this@searchBar.filter.isEmpty() || this@searchBar.isCheckboxChecked()) 
-										dataProvider.setFilter( PerfilFilter(this@searchBar.getFilter(), this@searchBar.isCheckboxChecked()))
+										dataProvider.submitFilter( PerfilFilter(this@searchBar.getFilter(), this@searchBar.isCheckboxChecked()))
 									else
-										dataProvider.setFilter(PerfilFilter.emptyFilter)
+										dataProvider.submitFilter(PerfilFilter.emptyFilter)
 								}
 								getActionButton().getElement().setAttribute("new-button", true)
 								addActionClickListener{
@@ -249,6 +250,7 @@ class Perfiles: SplitViewFrame, SimpleDialog.Caller {
 							}
 							grid(dataProvider = dataProvider) {
 								setHeightFull()
+								setItemCount(this, service.serviceConfig)
 								addSelectionListener{ it.getFirstSelectedItem()
 												        .ifPresent(this@Content::showDetails)}
 								
@@ -406,13 +408,13 @@ class Perfiles: SplitViewFrame, SimpleDialog.Caller {
 						getActionButton().getElement().setAttribute("new-button", true)
 						addFilterChangeListener{
 							if (!this@searchBar.filter.isEmpty() || this@searchBar.isCheckboxChecked())
-								rolesDataProvider.setFilter(RolFilter(this@searchBar.getFilter(), this@searchBar.isCheckboxChecked()) )
+								rolesDataProvider.submitFilter(RolFilter(this@searchBar.getFilter(), this@searchBar.isCheckboxChecked()) )
 							else
-								rolesDataProvider.setFilter(RolFilter("", false))
+								rolesDataProvider.submitFilter(RolFilter("", false))
 						}
 					}
 					this@Detail.gridRoles = grid(dataProvider = rolesDataProvider) {
-						setSelectionMode(Grid.SelectionMode.SINGLE)
+						setSelectionMode(Grid.SelectionMode.MULTI)
 						columnFor(RolDTO::nombre) {
 							setHeader("Rol")
 							isAutoWidth = true
@@ -432,17 +434,8 @@ class Perfiles: SplitViewFrame, SimpleDialog.Caller {
 			searchBar.addActionClickListener{
          					if (gridRoles.getSelectedItems().isEmpty())
 								UIUtils.showNotification("No se ha seleccionado un rol")
-							else {
-        						val rol = gridRoles.getSelectedItems().toTypedArray()[0]
-        						val item = AssignRolDTO(rol.idRol, binder.getBean())
-
-								if (binder.getBean().id == null || binder.getBean().id!! <= 0)
-									UIUtils.showNotification("El perfil  " + binder.getBean().nombre + " es nuevo perfil. Guardar primero el perfil antes de asignarles roles")
-								else if (item.validate())
-        							graph.itemDropped(rol, true, item)
-        						else
-    								UIUtils.showNotification("El rol " + rol.nombre + " ya está asignada al perfil " + binder.getBean().nombre)       									
-        					}  	
+							else
+								assignRoles(gridRoles.getSelectedItems())
 	        			}
 			setGraph()
 			createDndFunctionality()
@@ -507,15 +500,16 @@ class Perfiles: SplitViewFrame, SimpleDialog.Caller {
 													UIUtils.showNotification("Se tiene seleccionado al perfil, solo se puede seleccionar roles")
 												else { // do deletion
 													val unAssignRoles = ArrayList<DnDDTO>()
-													
+													val unAssignRolDTOs = ArrayList<AssignRolDTO>()
+
 													for (key in itemsSelected.keys) {
 														val rolNode = binder.getBean().graph!!.node(itemsSelected.get(key)!!)
 														val rol = binder.getBean().rolById(rolNode!!.idNeo4j)
-														val unAssignRolDTO = AssignRolDTO(rol!!.idRol, binder.getBean())
-																									
-														service.unAssignRole(unAssignRolDTO).block()
+
+														unAssignRolDTOs.add(AssignRolDTO(rol!!.idRol, binder.getBean()))
 														unAssignRoles.add(rol)
 													}
+													service.unAssignRoles(unAssignRolDTOs).block()	// all in one batch
 													graph.deleteNodes(unAssignRoles)
 												}
 											} else 
@@ -532,20 +526,46 @@ class Perfiles: SplitViewFrame, SimpleDialog.Caller {
 			gridRoles.addDragStartListener{ draggedItems = it.draggedItems}
 			gridRoles.addDragEndListener{
 									if (draggedItems.isNotEmpty()) {
-										val rol = draggedItems.iterator().next()
-										val item = AssignRolDTO(rol.idRol, binder.getBean())
-
-										if (binder.bean.id == null || binder.getBean().id!! <= 0)
-											UIUtils.showNotification("El perfil  " + binder.getBean().nombre + " es nuevo perfil. Guardar primero el perfil antes de asignarles roles")
-										else if (item.validate())
-											graph.itemDropped(rol, true, item )
-										else
-											UIUtils.showNotification("El rol " + rol.nombre + " ya está asignada al perfil " + binder.getBean().nombre)      														
+										assignRoles(draggedItems)
 										draggedItems = ArrayList()
 									}
 			}
 		}
 
+		/*
+		 * One rol is saved by the graph SaveEvent, many roles (i.e., a multi-item drop or
+		 * selection) are assigned in one batch and then added to the graph.
+		 */
+		private fun assignRoles(roles: Collection<RolDTO>) {
+			if (binder.bean.id == null || binder.getBean().id!! <= 0) {
+				UIUtils.showNotification("El perfil  " + binder.getBean().nombre + " es nuevo perfil. Guardar primero el perfil antes de asignarles roles")
+				return
+			}
+
+			val assigned = ArrayList<RolDTO>()
+			val items = ArrayList<AssignRolDTO>()
+
+			for (rol in roles) {
+				val item = AssignRolDTO(rol.idRol, binder.getBean())
+
+				if (item.validate()) {
+					assigned.add(rol)
+					items.add(item)
+				} else
+					UIUtils.showNotification("El rol " + rol.nombre + " ya está asignada al perfil " + binder.getBean().nombre)
+			}
+			if (items.size == 1)
+				graph.itemDropped(assigned[0], true, items[0])
+			else if (items.isNotEmpty())
+				try {
+					service.assignRoles(items).block()		// all in one batch
+					graph.addNodes(assigned)
+				} catch (e: Exception) {
+					UIUtils.showNotification("Error al asignar los roles al perfil:" + e.message)
+					e.printStackTrace()
+				}
+		}
+
 		fun close() {}
 
 		fun write(perfil: PerfilDTO) = binder.writeBean(perfil)
@@ -63,6 +63,8 @@ import com.vaadin.flow.shared.Registration
 import jakarta.annotation.security.RolesAllowed
 import org.springframework.context.annotation.Scope
 import org.springframework.stereotype.Component
+import reactor.core.publisher.Mono
+import reactor.core.scheduler.Schedulers
 
 /**
  * Page to display all permits for a specific Profile.
@@ -248,11 +250,13 @@ class VistaDetails(private val service: PerfilService,
         }
 
         fun updateTree() {
-            val datum = ArrayList<TreePerfil>(1)
+            val data = Mono.fromCallable {
+                            val datum = ArrayList<TreePerfil>(1)
 
-            datum.add(TreePerfil.mapFromEntity(item))
-
-            val data = mapper.writeValueAsString(datum)
+                            datum.add(TreePerfil.mapFromEntity(item))
+                            mapper.writeValueAsString(datum)
+                       }
+                       .subscribeOn(Schedulers.boundedElastic())    // no remote calls, so it does not need the request thread
 
             if (!treeAlreadyRendered) {
                 div.add(tree)
@@ -141,3 +141,29 @@ function updateGraph() {
 	alchemy = new Alchemy(config);
 }
 
+/*
+ * Applies the changes sent by Graph.java (see GraphDelta) to the graph already rendered,
+ * instead of creating the whole graph again. other_data is updated too, so the refresh
+ * button (i.e., updateGraph) renders the same graph.
+ */
+function applyGraphDelta(delta) {
+	if (!alchemy) {
+		return;
+	}
+	delta.removeNodes.forEach(function(id) {
+		alchemy.get.nodes(id).remove();
+	});
+	other_data.nodes = other_data.nodes.filter(function(node) {
+		return delta.removeNodes.indexOf(node.id) < 0;
+	});
+	other_data.edges = other_data.edges.filter(function(edge) {
+		return delta.removeNodes.indexOf(edge.source) < 0 && delta.removeNodes.indexOf(edge.target) < 0;
+	});
+	if (delta.addNodes.length > 0) {
+		alchemy.create.nodes(delta.addNodes);
+		alchemy.create.edges(delta.addEdges);
+		alchemy.updateGraph();
+		other_data.nodes = other_data.nodes.concat(delta.addNodes);
+		other_data.edges = other_data.edges.concat(delta.addEdges);
+	}
+}
@@ -0,0 +1,93 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  CompaniaDTOTest.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.iamui.backend.data.dto.compania
+
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+/**
+ * Mapping of the company areas (see CompaniaDTO.fromAreas) by many sessions at the same time.
+ *
+ * @author rlh
+ * @project : iam-ui
+ * @date September 2023
+ */
+class CompaniaDTOTest {
+
+    private fun areas(compania: Int): List<AreaDTO> {
+        val areas = (1..AREAS).map { AreaDTO(id = compania * 1000L + it, nombre = "area$compania-$it",
+                                             activo = true, idArea = compania * 1000L + it) }
+
+        return areas + areas.first().copy()         // the same area twice
+    }
+
+    @Test
+    fun `maps the same area once per call`() {
+        val companias = CompaniaDTO.fromAreas(areas(1))
+
+        assertThat(companias).hasSize(AREAS + 1)
+        assertThat(companias.last()).isSameAs(companias.first())
+        assertThat(companias.first().idPersona).isEqualTo(1001L)
+    }
+
+    @Test
+    fun `concurrent mappings do not share their areas`() {
+        val executor = Executors.newFixedThreadPool(THREADS)
+        val start = CountDownLatch(1)
+
+        try {
+            val results = (1..THREADS).map { thread ->
+                executor.submit(Callable {
+                    start.await()
+                    (1..ITERATIONS).map { iteration ->
+                        val compania = thread * ITERATIONS + iteration
+                        val companias = CompaniaDTO.fromAreas(areas(compania))
+
+                        assertThat(companias).hasSize(AREAS + 1)
+                        assertThat(companias.last()).isSameAs(companias.first())
+                        assertThat(companias.map { it.id!! / 1000 }).containsOnly(compania.toLong())
+                        companias.first()
+                    }
+                })
+            }
+
+            start.countDown()
+
+            val firsts = results.flatMap { it.get(30, TimeUnit.SECONDS) }
+
+            assertThat(firsts.map { it.id }).doesNotHaveDuplicates().hasSize(THREADS * ITERATIONS)
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    companion object {
+        const val THREADS = 16
+        const val ITERATIONS = 500
+        const val AREAS = 20
+    }
+}
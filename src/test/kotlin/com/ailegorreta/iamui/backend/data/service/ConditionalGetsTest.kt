@@ -0,0 +1,132 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  ConditionalGetsTest.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.iamui.backend.data.service
+
+import com.sun.net.httpserver.HttpServer
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import org.springframework.web.reactive.function.client.ClientResponse
+import org.springframework.web.reactive.function.client.WebClient
+import reactor.core.publisher.Mono
+import java.net.InetSocketAddress
+import java.net.URI
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * ConditionalGets against a local stub server that answers 304 when the If-None-Match is its
+ * current ETag. Shows that the repeated refreshes neither download nor decode the page.
+ *
+ * @author rlh
+ * @project : iam-ui
+ * @date September 2023
+ */
+class ConditionalGetsTest {
+
+    private lateinit var server: HttpServer
+    private lateinit var uri: URI
+    private val webClient = WebClient.create()
+
+    @Volatile private var version = 1
+    private val modified = AtomicInteger()
+    private val notModified = AtomicInteger()
+    private val bytesSent = AtomicLong()
+    private val decoded = AtomicInteger()
+
+    @BeforeEach
+    fun startServer() {
+        server = HttpServer.create(InetSocketAddress("localhost", 0), 0)
+        server.createContext("/iam/roles") { exchange ->
+            val eTag = "\"v$version\""
+
+            if (exchange.requestHeaders.getFirst("If-None-Match") == eTag) {
+                notModified.incrementAndGet()
+                exchange.sendResponseHeaders(304, -1)
+            } else {
+                val body = (1..500).joinToString(",", "[", "]") { "\"ROL_${version}_$it\"" }.toByteArray()
+
+                modified.incrementAndGet()
+                bytesSent.addAndGet(body.size.toLong())
+                exchange.responseHeaders.add("Content-Type", "application/json")
+                exchange.responseHeaders.add("ETag", eTag)
+                exchange.sendResponseHeaders(200, body.size.toLong())
+                exchange.responseBody.use { it.write(body) }
+            }
+            exchange.close()
+        }
+        server.start()
+        uri = URI.create("http://localhost:${server.address.port}/iam/roles")
+    }
+
+    @AfterEach
+    fun stopServer() {
+        server.stop(0)
+    }
+
+    private fun get(conditionalGets: ConditionalGets): List<String> =
+        conditionalGets.get("findAll", uri, { webClient.get().uri(uri) }, ::decode) { it.toMutableList() }
+                       .block()!!
+
+    private fun decode(response: ClientResponse): Mono<List<String>> =
+        response.bodyToMono(Array<String>::class.java)
+                .doOnNext { decoded.incrementAndGet() }
+                .map { it.toList() }
+
+    @Test
+    fun `not modified pages are not downloaded nor decoded again`() {
+        val conditionalGets = ConditionalGets("RolService", 10)
+        val first = get(conditionalGets)
+        val bytesFirst = bytesSent.get()
+
+        repeat(10) {
+            assertThat(get(conditionalGets)).isEqualTo(first)
+        }
+        assertThat(modified.get()).isEqualTo(1)
+        assertThat(notModified.get()).isEqualTo(10)
+        assertThat(bytesSent.get()).isEqualTo(bytesFirst)
+        assertThat(decoded.get()).isEqualTo(1)
+    }
+
+    @Test
+    fun `modified pages are downloaded and kept again`() {
+        val conditionalGets = ConditionalGets("RolService", 10)
+
+        assertThat(get(conditionalGets)).startsWith("ROL_1_1")
+        version = 2
+        assertThat(get(conditionalGets)).startsWith("ROL_2_1")
+        assertThat(get(conditionalGets)).startsWith("ROL_2_1")
+        assertThat(modified.get()).isEqualTo(2)
+        assertThat(notModified.get()).isEqualTo(1)
+        assertThat(decoded.get()).isEqualTo(2)
+    }
+
+    @Test
+    fun `the kept page is returned as a copy`() {
+        val conditionalGets = ConditionalGets("RolService", 10)
+
+        (get(conditionalGets) as MutableList<String>).clear()
+        assertThat(get(conditionalGets)).hasSize(500)
+    }
+}
@@ -0,0 +1,71 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  CustomWebClientServiceTest.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.iamui.backend.data.service
+
+import com.ailegorreta.iamui.config.ServiceConfig
+import com.ailegorreta.iamui.ui.exceptions.RestClientException
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule
+import com.fasterxml.jackson.module.kotlin.jacksonObjectMapper
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import org.junit.jupiter.api.Test
+import org.springframework.web.reactive.function.client.WebClient
+
+/**
+ * One pass decoding of the JSON arrays (see CustomWebClientService.toList).
+ *
+ * @author rlh
+ * @project : iam-ui
+ * @date September 2023
+ */
+class CustomWebClientServiceTest {
+
+    private val service = GrupoService(jacksonObjectMapper().registerModule(JavaTimeModule()),
+                                       WebClient.create(), ServiceConfig())
+
+    private fun grupo(id: Int) =
+        """{"id":$id,"nombre":"grupo$id","activo":${id % 2 == 0},"usuarioModificacion":"admin",
+            "fechaModificacion":"2023-09-01T10:00:00","permiteCompanias":[{"id":$id,"nombre":"compania$id",
+            "padre":true,"negocio":"GOBIERNO","usuarioModificacion":"admin","activo":true,"idPersona":$id}]}"""
+
+    @Test
+    fun `decodes every element of the array`() {
+        val grupos = service.toList((1..3).joinToString(",", "[", "]") { grupo(it) })
+
+        assertThat(grupos).extracting<Long?> { it.id }.containsExactly(1L, 2L, 3L)
+        assertThat(grupos).extracting<String> { it.nombre }.containsExactly("grupo1", "grupo2", "grupo3")
+        assertThat(grupos[1].activo).isTrue()
+        assertThat(grupos[2].permiteCompanias).extracting<String> { it.nombre }.containsExactly("compania3")
+    }
+
+    @Test
+    fun `decodes an empty array`() {
+        assertThat(service.toList("[ ]")).isEmpty()
+    }
+
+    @Test
+    fun `rejects what is not an array`() {
+        assertThatThrownBy { service.toList(grupo(1)) }.isInstanceOf(RestClientException::class.java)
+        assertThatThrownBy { service.toList("[${grupo(1)}") }.isInstanceOf(RestClientException::class.java)
+    }
+}
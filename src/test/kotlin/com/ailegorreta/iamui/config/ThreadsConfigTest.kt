@@ -0,0 +1,179 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  ThreadsConfigTest.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.iamui.config
+
+import com.ailegorreta.commons.utils.HasLogger
+import com.sun.net.httpserver.HttpServer
+import jakarta.servlet.http.HttpServlet
+import jakarta.servlet.http.HttpServletRequest
+import jakarta.servlet.http.HttpServletResponse
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory
+import org.springframework.boot.web.server.WebServer
+import org.springframework.boot.web.servlet.ServletContextInitializer
+import org.springframework.mock.env.MockEnvironment
+import org.springframework.web.reactive.function.client.WebClient
+import java.lang.management.ManagementFactory
+import java.net.InetSocketAddress
+import java.net.URI
+import java.net.http.HttpClient
+import java.net.http.HttpRequest
+import java.net.http.HttpResponse
+import java.time.Duration
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+/**
+ * Load of the Tomcat request handling with platform threads and with virtual threads (see
+ * ThreadsConfig). SESSIONS concurrent requests are sent to a Tomcat whose servlet blocks, like
+ * the views and data providers, until a stub iam-service answers after LATENCY.
+ *
+ * With platform threads the requests wait for one of the Tomcat pool threads, with virtual
+ * threads they do not, so the peak of (platform) threads and the p99 of the requests are
+ * compared.
+ *
+ * @author rlh
+ * @project : iam-ui
+ * @date September 2023
+ */
+class ThreadsConfigTest: HasLogger {
+
+    private lateinit var iamService: HttpServer
+    private lateinit var connectors: WebClientConnectors
+    private lateinit var webClient: WebClient
+    private val client = HttpClient.newBuilder()
+                                   .version(HttpClient.Version.HTTP_1_1)
+                                   .executor(Executors.newVirtualThreadPerTaskExecutor())
+                                   .build()
+
+    @BeforeEach
+    fun startIamService() {
+        iamService = HttpServer.create(InetSocketAddress("localhost", 0), SESSIONS)
+        iamService.executor = Executors.newVirtualThreadPerTaskExecutor()
+        iamService.createContext("/iam/roles") { exchange ->
+            val body = "[]".toByteArray()
+
+            Thread.sleep(LATENCY.toMillis())
+            exchange.responseHeaders.add("Content-Type", "application/json")
+            exchange.sendResponseHeaders(200, body.size.toLong())
+            exchange.responseBody.use { it.write(body) }
+        }
+        iamService.start()
+        connectors = WebClientConnectors(MockEnvironment().withProperty("microservice.iam.pool.max-connections", SESSIONS.toString()))
+        webClient = WebClient.builder()
+                             .baseUrl("http://localhost:${iamService.address.port}")
+                             .clientConnector(connectors.connector("iam"))
+                             .build()
+    }
+
+    @AfterEach
+    fun stop() {
+        connectors.destroy()
+        iamService.stop(0)
+    }
+
+    /*
+     * Like a data provider: the request thread is blocked until the iam-service answers.
+     */
+    private val view = object : HttpServlet() {
+        override fun doGet(request: HttpServletRequest, response: HttpServletResponse) {
+            val roles = webClient.get().uri("/iam/roles").retrieve().bodyToMono(String::class.java).block()
+
+            response.contentType = "application/json"
+            response.writer.write(roles!!)
+        }
+    }
+
+    private fun tomcat(virtualThreads: Boolean): WebServer {
+        val factory = TomcatServletWebServerFactory(0)
+
+        if (virtualThreads)
+            factory.addProtocolHandlerCustomizers(ThreadsConfig().virtualThreadsProtocolHandler())
+
+        return factory.getWebServer(ServletContextInitializer { context ->
+                                        context.addServlet("view", view).addMapping("/*")
+                                    })
+                      .apply { start() }
+    }
+
+    class Load(val p99Millis: Long, val peakThreads: Int)
+
+    /**
+     * Sends the requests at the same time and returns their p99 and the peak of live threads.
+     */
+    private fun load(tomcat: WebServer, requests: Int): Load {
+        val threads = ManagementFactory.getThreadMXBean()
+        val request = HttpRequest.newBuilder(URI("http://localhost:${tomcat.port}/view")).build()
+
+        threads.resetPeakThreadCount()
+
+        val millis = (1..requests).map {
+            val start = System.nanoTime()
+
+            client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                  .thenApply { response ->
+                      assertThat(response.statusCode()).isEqualTo(200)
+                      TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+                  }
+        }.let { responses ->
+            CompletableFuture.allOf(*responses.toTypedArray()).get(60, TimeUnit.SECONDS)
+            responses.map { it.join() }.sorted()
+        }
+
+        return Load(millis[(millis.size * 99 / 100).coerceAtMost(millis.size - 1)], threads.peakThreadCount)
+    }
+
+    private fun measure(virtualThreads: Boolean): Load {
+        val tomcat = tomcat(virtualThreads)
+
+        try {
+            load(tomcat, WARM_UP)
+            return load(tomcat, SESSIONS)
+        } finally {
+            tomcat.stop()
+        }
+    }
+
+    @Test
+    fun `virtual threads serve the sessions with less threads and a lower p99`() {
+        val platform = measure(false)
+        val virtual = measure(true)
+
+        logger.info("$SESSIONS sesiones, platform threads: p99 ${platform.p99Millis} ms, ${platform.peakThreads} threads; " +
+                    "virtual threads: p99 ${virtual.p99Millis} ms, ${virtual.peakThreads} threads")
+        assertThat(platform.p99Millis).isGreaterThanOrEqualTo(SESSIONS / TOMCAT_MAX_THREADS * LATENCY.toMillis())
+        assertThat(virtual.peakThreads).isLessThan(platform.peakThreads)
+        assertThat(virtual.p99Millis).isLessThan(platform.p99Millis)
+    }
+
+    companion object {
+        val LATENCY: Duration = Duration.ofMillis(100)
+        const val SESSIONS = 500
+        const val WARM_UP = 50
+        const val TOMCAT_MAX_THREADS = 200      // default server.tomcat.threads.max
+    }
+}
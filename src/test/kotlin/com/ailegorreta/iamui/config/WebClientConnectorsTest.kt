@@ -0,0 +1,175 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  WebClientConnectorsTest.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.iamui.config
+
+import com.sun.net.httpserver.HttpServer
+import io.micrometer.core.instrument.Metrics
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import org.springframework.mock.env.MockEnvironment
+import org.springframework.web.reactive.function.client.WebClient
+import reactor.core.publisher.Flux
+import reactor.core.publisher.Mono
+import java.net.InetSocketAddress
+import java.time.Duration
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Load of the WebClient connection pools (see WebClientConnectors) against a local stub server
+ * that answers every request after LATENCY. The pool settings are compared by the time of a
+ * burst of concurrent requests and by the connections that the stub server sees.
+ *
+ * @author rlh
+ * @project : iam-ui
+ * @date September 2023
+ */
+class WebClientConnectorsTest {
+
+    private lateinit var server: HttpServer
+    private val inFlight = AtomicInteger()
+    private val maxInFlight = AtomicInteger()
+    private val connections = ConcurrentHashMap.newKeySet<Int>()
+    private val connectors = ArrayList<WebClientConnectors>()
+
+    @BeforeEach
+    fun startServer() {
+        server = HttpServer.create(InetSocketAddress("localhost", 0), 0)
+        server.executor = Executors.newCachedThreadPool()
+        server.createContext("/iam/roles") { exchange ->
+            val body = "[]".toByteArray()
+
+            connections.add(exchange.remoteAddress.port)
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet()) { a, b -> maxOf(a, b) }
+            Thread.sleep(LATENCY.toMillis())
+            inFlight.decrementAndGet()
+            exchange.responseHeaders.add("Content-Type", "application/json")
+            exchange.sendResponseHeaders(200, body.size.toLong())
+            exchange.responseBody.use { it.write(body) }
+        }
+        server.start()
+    }
+
+    @AfterEach
+    fun stop() {
+        connectors.forEach { it.destroy() }
+        server.stop(0)
+    }
+
+    private fun webClient(vararg pool: Pair<String, Any>): WebClient {
+        val environment = MockEnvironment().withProperty("microservice.iam.provider-uri", "http://localhost")
+
+        pool.forEach { (key, value) -> environment.setProperty("microservice.iam.pool.$key", value.toString()) }
+
+        val webClientConnectors = WebClientConnectors(environment)
+
+        connectors.add(webClientConnectors)
+        return WebClient.builder()
+                        .baseUrl("http://localhost:${server.address.port}")
+                        .clientConnector(webClientConnectors.connector("iam"))
+                        .build()
+    }
+
+    private fun get(webClient: WebClient): Mono<String> =
+        webClient.get().uri("/iam/roles").retrieve().bodyToMono(String::class.java)
+
+    /**
+     * Milliseconds of a burst of concurrent requests.
+     */
+    private fun burst(webClient: WebClient, requests: Int): Long {
+        val start = System.nanoTime()
+
+        Flux.range(1, requests)
+            .flatMap({ get(webClient) }, requests)
+            .blockLast(Duration.ofSeconds(30))
+
+        return Duration.ofNanos(System.nanoTime() - start).toMillis()
+    }
+
+    @Test
+    fun `the pool bounds the concurrent connections`() {
+        val small = webClient("max-connections" to 2)
+        val smallMillis = burst(small, BURST)
+        val smallMaxInFlight = maxInFlight.getAndSet(0)
+
+        val large = webClient("max-connections" to BURST)
+        val largeMillis = burst(large, BURST)
+
+        assertThat(smallMaxInFlight).isLessThanOrEqualTo(2)
+        assertThat(smallMillis).isGreaterThanOrEqualTo(BURST / 2 * LATENCY.toMillis())
+        assertThat(maxInFlight.get()).isGreaterThan(2)
+        assertThat(largeMillis).isLessThan(smallMillis)
+    }
+
+    @Test
+    fun `the connections are kept alive and reused`() {
+        val webClient = webClient("max-connections" to 4)
+
+        repeat(20) { get(webClient).block(Duration.ofSeconds(5)) }
+
+        assertThat(connections).hasSize(1)
+    }
+
+    @Test
+    fun `the waiting queue is bounded`() {
+        val webClient = webClient("max-connections" to 1, "pending-acquire-max-count" to 2)
+        val failed = AtomicInteger()
+
+        Flux.range(1, 10)
+            .flatMap({ get(webClient).onErrorResume { failed.incrementAndGet(); Mono.empty() } }, 10)
+            .blockLast(Duration.ofSeconds(30))
+
+        assertThat(failed.get()).isGreaterThan(0)
+    }
+
+    @Test
+    fun `the pool metrics are registered by pool name`() {
+        val webClient = webClient("max-connections" to 4)
+
+        get(webClient).block(Duration.ofSeconds(5))
+
+        listOf("total.connections", "active.connections", "idle.connections", "pending.connections", "max.connections")
+            .forEach { gauge ->
+                assertThat(Metrics.globalRegistry.find("reactor.netty.connection.provider.$gauge")
+                                                 .tag("name", "iam")
+                                                 .gauge())
+                    .describedAs(gauge)
+                    .isNotNull()
+            }
+    }
+
+    @Test
+    fun `http2 falls back to HTTP 1_1`() {
+        val webClient = webClient("http2" to true)
+
+        assertThat(get(webClient).block(Duration.ofSeconds(5))).isEqualTo("[]")
+    }
+
+    companion object {
+        val LATENCY: Duration = Duration.ofMillis(100)
+        const val BURST = 20
+    }
+}